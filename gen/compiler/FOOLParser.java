@@ -1,5 +1,10 @@
-// Generated from /Users/muni/Documents/uni/LCMC/onlyCode/fool-compiler/src/compiler/FOOL.g4 by ANTLR 4.13.2
+// Generated from FOOL.g4 by ANTLR 4.13.1
 package compiler;
+
+import java.util.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
 import org.antlr.v4.runtime.atn.*;
 import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.*;
@@ -9,9 +14,9 @@ import java.util.List;
 import java.util.Iterator;
 import java.util.ArrayList;
 
-@SuppressWarnings({"all", "warnings", "unchecked", "unused", "cast", "CheckReturnValue", "this-escape"})
+@SuppressWarnings({"all", "warnings", "unchecked", "unused", "cast", "CheckReturnValue"})
 public class FOOLParser extends Parser {
-	static { RuntimeMetaData.checkVersion("4.13.2", RuntimeMetaData.VERSION); }
+	static { RuntimeMetaData.checkVersion("4.13.1", RuntimeMetaData.VERSION); }
 
 	protected static final DFA[] _decisionToDFA;
 	protected static final PredictionContextCache _sharedContextCache =
@@ -97,6 +102,31 @@ public class FOOLParser extends Parser {
 	@Override
 	public ATN getATN() { return _ATN; }
 
+
+	// prog() with SLL prediction first, bailing out at the first syntax error, and only then
+	// again from the start with full LL prediction and the usual error reporting: SLL gives
+	// the same tree for correct programs and spares the full-context prediction of exp
+	public ProgContext twoStageProg() {
+		List<ANTLRErrorListener> listeners = new ArrayList<>(getErrorListeners());
+		removeErrorListeners(); // the error bailing out is reported by the second stage
+		getInterpreter().setPredictionMode(PredictionMode.SLL);
+		setErrorHandler(new BailErrorStrategy());
+		try {
+			return prog();
+		} catch (ParseCancellationException e) {
+			listeners.forEach(this::addErrorListener);
+			listeners = null;
+			reset();
+			getInterpreter().setPredictionMode(PredictionMode.LL);
+			setErrorHandler(new DefaultErrorStrategy());
+			return prog();
+		} finally {
+			if (listeners != null) listeners.forEach(this::addErrorListener);
+			getInterpreter().setPredictionMode(PredictionMode.LL);
+			setErrorHandler(new DefaultErrorStrategy());
+		}
+	}
+
 	public FOOLParser(TokenStream input) {
 		super(input);
 		_interp = new ParserATNSimulator(this,_ATN,_decisionToDFA,_sharedContextCache);
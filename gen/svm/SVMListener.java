@@ -1,4 +1,4 @@
-// Generated from /Users/muni/Documents/uni/LCMC/onlyCode/fool-compiler/src/svm/SVM.g4 by ANTLR 4.13.2
+// Generated from SVM.g4 by ANTLR 4.13.1
 package svm;
 import org.antlr.v4.runtime.tree.ParseTreeListener;
 
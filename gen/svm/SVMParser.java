@@ -1,7 +1,9 @@
-// Generated from /Users/muni/Documents/uni/LCMC/onlyCode/fool-compiler/src/svm/SVM.g4 by ANTLR 4.13.2
+// Generated from SVM.g4 by ANTLR 4.13.1
 package svm;
 
 import java.util.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 
 import org.antlr.v4.runtime.atn.*;
 import org.antlr.v4.runtime.dfa.DFA;
@@ -12,9 +14,9 @@ import java.util.List;
 import java.util.Iterator;
 import java.util.ArrayList;
 
-@SuppressWarnings({"all", "warnings", "unchecked", "unused", "cast", "CheckReturnValue", "this-escape"})
+@SuppressWarnings({"all", "warnings", "unchecked", "unused", "cast", "CheckReturnValue"})
 public class SVMParser extends Parser {
-	static { RuntimeMetaData.checkVersion("4.13.2", RuntimeMetaData.VERSION); }
+	static { RuntimeMetaData.checkVersion("4.13.1", RuntimeMetaData.VERSION); }
 
 	protected static final DFA[] _decisionToDFA;
 	protected static final PredictionContextCache _sharedContextCache =
@@ -23,7 +25,11 @@ public class SVMParser extends Parser {
 		PUSH=1, POP=2, ADD=3, SUB=4, MULT=5, DIV=6, STOREW=7, LOADW=8, BRANCH=9, 
 		BRANCHEQ=10, BRANCHLESSEQ=11, JS=12, LOADRA=13, STORERA=14, LOADTM=15, 
 		STORETM=16, LOADFP=17, STOREFP=18, COPYFP=19, LOADHP=20, STOREHP=21, PRINT=22, 
-		HALT=23, COL=24, LABEL=25, INTEGER=26, COMMENT=27, WHITESP=28, ERR=29;
+		HALT=23, LOADLOCAL=24, LOADOUTER=25, DUP=26, CALLFRAME=27, CALLMETHOD=28, 
+		NEW=29, LOADGFP=30, EQUAL=31, LESSEQUAL=32, GREATEREQUAL=33, LESS=34, 
+		NOT=35, BRANCHTRUE=36, BRANCHFALSE=37, CALL=38, JUMPANDLINK=39, ENTER=40, 
+		LEAVE=41, LOADDISPLAY=42, PUSHDISPLAY=43, COL=44, LABEL=45, INTEGER=46, 
+		COMMENT=47, WHITESP=48, ERR=49;
 	public static final int
 		RULE_assembly = 0, RULE_instruction = 1;
 	private static String[] makeRuleNames() {
@@ -38,7 +44,9 @@ public class SVMParser extends Parser {
 			null, "'push'", "'pop'", "'add'", "'sub'", "'mult'", "'div'", "'sw'", 
 			"'lw'", "'b'", "'beq'", "'bleq'", "'js'", "'lra'", "'sra'", "'ltm'", 
 			"'stm'", "'lfp'", "'sfp'", "'cfp'", "'lhp'", "'shp'", "'print'", "'halt'", 
-			"':'"
+			"'lloc'", "'lout'", "'dup'", "'callf'", "'callm'", "'new'", "'lgfp'", 
+			"'eq'", "'le'", "'ge'", "'lt'", "'not'", "'bt'", "'bf'", "'call'", "'jal'", 
+			"'enter'", "'leave'", "'ldis'", "'pdis'", "':'"
 		};
 	}
 	private static final String[] _LITERAL_NAMES = makeLiteralNames();
@@ -47,7 +55,10 @@ public class SVMParser extends Parser {
 			null, "PUSH", "POP", "ADD", "SUB", "MULT", "DIV", "STOREW", "LOADW", 
 			"BRANCH", "BRANCHEQ", "BRANCHLESSEQ", "JS", "LOADRA", "STORERA", "LOADTM", 
 			"STORETM", "LOADFP", "STOREFP", "COPYFP", "LOADHP", "STOREHP", "PRINT", 
-			"HALT", "COL", "LABEL", "INTEGER", "COMMENT", "WHITESP", "ERR"
+			"HALT", "LOADLOCAL", "LOADOUTER", "DUP", "CALLFRAME", "CALLMETHOD", "NEW", 
+			"LOADGFP", "EQUAL", "LESSEQUAL", "GREATEREQUAL", "LESS", "NOT", "BRANCHTRUE", 
+			"BRANCHFALSE", "CALL", "JUMPANDLINK", "ENTER", "LEAVE", "LOADDISPLAY", 
+			"PUSHDISPLAY", "COL", "LABEL", "INTEGER", "COMMENT", "WHITESP", "ERR"
 		};
 	}
 	private static final String[] _SYMBOLIC_NAMES = makeSymbolicNames();
@@ -97,10 +108,43 @@ public class SVMParser extends Parser {
 	public ATN getATN() { return _ATN; }
 
 	 
-	public int[] code = new int[ExecuteVM.CODESIZE];    
+	public int[] code = new int[1024];    
 	private int i = 0;
 	private Map<String,Integer> labelDef = new HashMap<>();
 	private Map<Integer,String> labelRef = new HashMap<>();
+	private Map<Integer,Integer> lineDef = new TreeMap<>(); // .asm line of each instruction
+
+	public Map<String,Integer> getLabels() { return labelDef; }
+	public Map<Integer,Integer> getLines() { return lineDef; }
+
+	// assembly() with SLL prediction first, bailing out at the first syntax error, and only then
+	// again from the start, with what the actions built so far dropped, with full LL prediction
+	// and the usual error reporting
+	public AssemblyContext twoStageAssembly() {
+		List<ANTLRErrorListener> listeners = new ArrayList<>(getErrorListeners());
+		removeErrorListeners(); // the error bailing out is reported by the second stage
+		getInterpreter().setPredictionMode(PredictionMode.SLL);
+		setErrorHandler(new BailErrorStrategy());
+		try {
+			return assembly();
+		} catch (ParseCancellationException e) {
+			listeners.forEach(this::addErrorListener);
+			listeners = null;
+			reset();
+			code = new int[1024];
+			i = 0;
+			labelDef.clear();
+			labelRef.clear();
+			lineDef.clear();
+			getInterpreter().setPredictionMode(PredictionMode.LL);
+			setErrorHandler(new DefaultErrorStrategy());
+			return assembly();
+		} finally {
+			if (listeners != null) listeners.forEach(this::addErrorListener);
+			getInterpreter().setPredictionMode(PredictionMode.LL);
+			setErrorHandler(new DefaultErrorStrategy());
+		}
+	}
 
 	public SVMParser(TokenStream input) {
 		super(input);
@@ -145,7 +189,7 @@ public class SVMParser extends Parser {
 			setState(7);
 			_errHandler.sync(this);
 			_la = _input.LA(1);
-			while ((((_la) & ~0x3f) == 0 && ((1L << _la) & 50331646L) != 0)) {
+			while ((((_la) & ~0x3f) == 0 && ((1L << _la) & 52776558133246L) != 0)) {
 				{
 				{
 				setState(4);
@@ -160,6 +204,7 @@ public class SVMParser extends Parser {
 			match(EOF);
 			 for (Integer j: labelRef.keySet()) 
 											code[j]=labelDef.get(labelRef.get(j)); 
+										  code = Arrays.copyOf(code, i);
 										
 			}
 		}
@@ -178,8 +223,13 @@ public class SVMParser extends Parser {
 	public static class InstructionContext extends ParserRuleContext {
 		public Token n;
 		public Token l;
+		public Token d;
+		public Token m;
 		public TerminalNode PUSH() { return getToken(SVMParser.PUSH, 0); }
-		public TerminalNode INTEGER() { return getToken(SVMParser.INTEGER, 0); }
+		public List<TerminalNode> INTEGER() { return getTokens(SVMParser.INTEGER); }
+		public TerminalNode INTEGER(int i) {
+			return getToken(SVMParser.INTEGER, i);
+		}
 		public TerminalNode LABEL() { return getToken(SVMParser.LABEL, 0); }
 		public TerminalNode POP() { return getToken(SVMParser.POP, 0); }
 		public TerminalNode ADD() { return getToken(SVMParser.ADD, 0); }
@@ -204,6 +254,26 @@ public class SVMParser extends Parser {
 		public TerminalNode STOREHP() { return getToken(SVMParser.STOREHP, 0); }
 		public TerminalNode PRINT() { return getToken(SVMParser.PRINT, 0); }
 		public TerminalNode HALT() { return getToken(SVMParser.HALT, 0); }
+		public TerminalNode LOADLOCAL() { return getToken(SVMParser.LOADLOCAL, 0); }
+		public TerminalNode LOADOUTER() { return getToken(SVMParser.LOADOUTER, 0); }
+		public TerminalNode DUP() { return getToken(SVMParser.DUP, 0); }
+		public TerminalNode CALLFRAME() { return getToken(SVMParser.CALLFRAME, 0); }
+		public TerminalNode CALLMETHOD() { return getToken(SVMParser.CALLMETHOD, 0); }
+		public TerminalNode NEW() { return getToken(SVMParser.NEW, 0); }
+		public TerminalNode LOADGFP() { return getToken(SVMParser.LOADGFP, 0); }
+		public TerminalNode EQUAL() { return getToken(SVMParser.EQUAL, 0); }
+		public TerminalNode LESSEQUAL() { return getToken(SVMParser.LESSEQUAL, 0); }
+		public TerminalNode GREATEREQUAL() { return getToken(SVMParser.GREATEREQUAL, 0); }
+		public TerminalNode LESS() { return getToken(SVMParser.LESS, 0); }
+		public TerminalNode NOT() { return getToken(SVMParser.NOT, 0); }
+		public TerminalNode BRANCHTRUE() { return getToken(SVMParser.BRANCHTRUE, 0); }
+		public TerminalNode BRANCHFALSE() { return getToken(SVMParser.BRANCHFALSE, 0); }
+		public TerminalNode CALL() { return getToken(SVMParser.CALL, 0); }
+		public TerminalNode JUMPANDLINK() { return getToken(SVMParser.JUMPANDLINK, 0); }
+		public TerminalNode ENTER() { return getToken(SVMParser.ENTER, 0); }
+		public TerminalNode LEAVE() { return getToken(SVMParser.LEAVE, 0); }
+		public TerminalNode LOADDISPLAY() { return getToken(SVMParser.LOADDISPLAY, 0); }
+		public TerminalNode PUSHDISPLAY() { return getToken(SVMParser.PUSHDISPLAY, 0); }
 		public InstructionContext(ParserRuleContext parent, int invokingState) {
 			super(parent, invokingState);
 		}
@@ -226,8 +296,10 @@ public class SVMParser extends Parser {
 	public final InstructionContext instruction() throws RecognitionException {
 		InstructionContext _localctx = new InstructionContext(_ctx, getState());
 		enterRule(_localctx, 2, RULE_instruction);
+		 if (i + 3 > code.length) code = Arrays.copyOf(code, code.length * 2); // room for the longest instruction
+		        lineDef.put(i, _input.LT(1).getLine()); 
 		try {
-			setState(69);
+			setState(127);
 			_errHandler.sync(this);
 			switch ( getInterpreter().adaptivePredict(_input,1,_ctx) ) {
 			case 1:
@@ -447,6 +519,220 @@ public class SVMParser extends Parser {
 				code[i++] = HALT;
 				}
 				break;
+			case 26:
+				enterOuterAlt(_localctx, 26);
+				{
+				setState(69);
+				match(LOADLOCAL);
+				setState(70);
+				((InstructionContext)_localctx).n = match(INTEGER);
+				code[i++] = LOADLOCAL;
+							                  code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+				}
+				break;
+			case 27:
+				enterOuterAlt(_localctx, 27);
+				{
+				setState(72);
+				match(LOADOUTER);
+				setState(73);
+				((InstructionContext)_localctx).d = match(INTEGER);
+				setState(74);
+				((InstructionContext)_localctx).n = match(INTEGER);
+				code[i++] = LOADOUTER;
+							                  code[i++] = Integer.parseInt((((InstructionContext)_localctx).d!=null?((InstructionContext)_localctx).d.getText():null));
+							                  code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+				}
+				break;
+			case 28:
+				enterOuterAlt(_localctx, 28);
+				{
+				setState(76);
+				match(DUP);
+				code[i++] = DUP;
+				}
+				break;
+			case 29:
+				enterOuterAlt(_localctx, 29);
+				{
+				setState(78);
+				match(CALLFRAME);
+				setState(79);
+				((InstructionContext)_localctx).d = match(INTEGER);
+				setState(80);
+				((InstructionContext)_localctx).n = match(INTEGER);
+				code[i++] = CALLFRAME;
+							                  code[i++] = Integer.parseInt((((InstructionContext)_localctx).d!=null?((InstructionContext)_localctx).d.getText():null));
+							                  code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+				}
+				break;
+			case 30:
+				enterOuterAlt(_localctx, 30);
+				{
+				setState(82);
+				match(CALLMETHOD);
+				setState(83);
+				((InstructionContext)_localctx).n = match(INTEGER);
+				code[i++] = CALLMETHOD;
+							                  code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+				}
+				break;
+			case 31:
+				enterOuterAlt(_localctx, 31);
+				{
+				setState(85);
+				match(NEW);
+				setState(86);
+				((InstructionContext)_localctx).n = match(INTEGER);
+				setState(87);
+				((InstructionContext)_localctx).m = match(INTEGER);
+				code[i++] = NEW;
+							                  code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+							                  code[i++] = Integer.parseInt((((InstructionContext)_localctx).m!=null?((InstructionContext)_localctx).m.getText():null));
+				}
+				break;
+			case 32:
+				enterOuterAlt(_localctx, 32);
+				{
+				setState(89);
+				match(LOADGFP);
+				code[i++] = LOADGFP;
+				}
+				break;
+			case 33:
+				enterOuterAlt(_localctx, 33);
+				{
+				setState(91);
+				match(EQUAL);
+				code[i++] = EQUAL;
+				}
+				break;
+			case 34:
+				enterOuterAlt(_localctx, 34);
+				{
+				setState(93);
+				match(LESSEQUAL);
+				code[i++] = LESSEQUAL;
+				}
+				break;
+			case 35:
+				enterOuterAlt(_localctx, 35);
+				{
+				setState(95);
+				match(GREATEREQUAL);
+				code[i++] = GREATEREQUAL;
+				}
+				break;
+			case 36:
+				enterOuterAlt(_localctx, 36);
+				{
+				setState(97);
+				match(LESS);
+				code[i++] = LESS;
+				}
+				break;
+			case 37:
+				enterOuterAlt(_localctx, 37);
+				{
+				setState(99);
+				match(NOT);
+				code[i++] = NOT;
+				}
+				break;
+			case 38:
+				enterOuterAlt(_localctx, 38);
+				{
+				setState(101);
+				match(BRANCHTRUE);
+				setState(102);
+				((InstructionContext)_localctx).l = match(LABEL);
+				code[i++] = BRANCHTRUE;
+				                        labelRef.put(i++,(((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
+				}
+				break;
+			case 39:
+				enterOuterAlt(_localctx, 39);
+				{
+				setState(104);
+				match(BRANCHFALSE);
+				setState(105);
+				((InstructionContext)_localctx).l = match(LABEL);
+				code[i++] = BRANCHFALSE;
+				                         labelRef.put(i++,(((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
+				}
+				break;
+			case 40:
+				enterOuterAlt(_localctx, 40);
+				{
+				setState(107);
+				match(CALL);
+				setState(108);
+				((InstructionContext)_localctx).d = match(INTEGER);
+				setState(109);
+				((InstructionContext)_localctx).l = match(LABEL);
+				code[i++] = CALL;
+							                  code[i++] = Integer.parseInt((((InstructionContext)_localctx).d!=null?((InstructionContext)_localctx).d.getText():null));
+				                        labelRef.put(i++,(((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
+				}
+				break;
+			case 41:
+				enterOuterAlt(_localctx, 41);
+				{
+				setState(111);
+				match(JUMPANDLINK);
+				setState(112);
+				((InstructionContext)_localctx).l = match(LABEL);
+				code[i++] = JUMPANDLINK;
+				                         labelRef.put(i++,(((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
+				}
+				break;
+			case 42:
+				enterOuterAlt(_localctx, 42);
+				{
+				setState(114);
+				match(ENTER);
+				setState(115);
+				((InstructionContext)_localctx).n = match(INTEGER);
+				code[i++] = ENTER;
+							                  code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+				}
+				break;
+			case 43:
+				enterOuterAlt(_localctx, 43);
+				{
+				setState(117);
+				match(LEAVE);
+				setState(118);
+				((InstructionContext)_localctx).n = match(INTEGER);
+				code[i++] = LEAVE;
+							                  code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+				}
+				break;
+			case 44:
+				enterOuterAlt(_localctx, 44);
+				{
+				setState(120);
+				match(LOADDISPLAY);
+				setState(121);
+				((InstructionContext)_localctx).n = match(INTEGER);
+				setState(122);
+				((InstructionContext)_localctx).m = match(INTEGER);
+				code[i++] = LOADDISPLAY;
+							                  code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+							                  code[i++] = Integer.parseInt((((InstructionContext)_localctx).m!=null?((InstructionContext)_localctx).m.getText():null));
+				}
+				break;
+			case 45:
+				enterOuterAlt(_localctx, 45);
+				{
+				setState(124);
+				match(PUSHDISPLAY);
+				setState(125);
+				((InstructionContext)_localctx).n = match(INTEGER);
+				code[i++] = PUSHDISPLAY;
+							                  code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+				}
+				break;
 			}
 		}
 		catch (RecognitionException re) {
@@ -461,7 +747,7 @@ public class SVMParser extends Parser {
 	}
 
 	public static final String _serializedATN =
-		"\u0004\u0001\u001dH\u0002\u0000\u0007\u0000\u0002\u0001\u0007\u0001\u0001"+
+		"\u0004\u00011\u0082\u0002\u0000\u0007\u0000\u0002\u0001\u0007\u0001\u0001"+
 		"\u0000\u0005\u0000\u0006\b\u0000\n\u0000\f\u0000\t\t\u0000\u0001\u0000"+
 		"\u0001\u0000\u0001\u0000\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
 		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
@@ -472,48 +758,92 @@ public class SVMParser extends Parser {
 		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
 		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
 		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
-		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0003\u0001F\b\u0001"+
-		"\u0001\u0001\u0000\u0000\u0002\u0000\u0002\u0000\u0000^\u0000\u0007\u0001"+
-		"\u0000\u0000\u0000\u0002E\u0001\u0000\u0000\u0000\u0004\u0006\u0003\u0002"+
-		"\u0001\u0000\u0005\u0004\u0001\u0000\u0000\u0000\u0006\t\u0001\u0000\u0000"+
-		"\u0000\u0007\u0005\u0001\u0000\u0000\u0000\u0007\b\u0001\u0000\u0000\u0000"+
-		"\b\n\u0001\u0000\u0000\u0000\t\u0007\u0001\u0000\u0000\u0000\n\u000b\u0005"+
-		"\u0000\u0000\u0001\u000b\f\u0006\u0000\uffff\uffff\u0000\f\u0001\u0001"+
-		"\u0000\u0000\u0000\r\u000e\u0005\u0001\u0000\u0000\u000e\u000f\u0005\u001a"+
-		"\u0000\u0000\u000fF\u0006\u0001\uffff\uffff\u0000\u0010\u0011\u0005\u0001"+
-		"\u0000\u0000\u0011\u0012\u0005\u0019\u0000\u0000\u0012F\u0006\u0001\uffff"+
-		"\uffff\u0000\u0013\u0014\u0005\u0002\u0000\u0000\u0014F\u0006\u0001\uffff"+
-		"\uffff\u0000\u0015\u0016\u0005\u0003\u0000\u0000\u0016F\u0006\u0001\uffff"+
-		"\uffff\u0000\u0017\u0018\u0005\u0004\u0000\u0000\u0018F\u0006\u0001\uffff"+
-		"\uffff\u0000\u0019\u001a\u0005\u0005\u0000\u0000\u001aF\u0006\u0001\uffff"+
-		"\uffff\u0000\u001b\u001c\u0005\u0006\u0000\u0000\u001cF\u0006\u0001\uffff"+
-		"\uffff\u0000\u001d\u001e\u0005\u0007\u0000\u0000\u001eF\u0006\u0001\uffff"+
-		"\uffff\u0000\u001f \u0005\b\u0000\u0000 F\u0006\u0001\uffff\uffff\u0000"+
-		"!\"\u0005\u0019\u0000\u0000\"#\u0005\u0018\u0000\u0000#F\u0006\u0001\uffff"+
-		"\uffff\u0000$%\u0005\t\u0000\u0000%&\u0005\u0019\u0000\u0000&F\u0006\u0001"+
-		"\uffff\uffff\u0000\'(\u0005\n\u0000\u0000()\u0005\u0019\u0000\u0000)F"+
-		"\u0006\u0001\uffff\uffff\u0000*+\u0005\u000b\u0000\u0000+,\u0005\u0019"+
-		"\u0000\u0000,F\u0006\u0001\uffff\uffff\u0000-.\u0005\f\u0000\u0000.F\u0006"+
-		"\u0001\uffff\uffff\u0000/0\u0005\r\u0000\u00000F\u0006\u0001\uffff\uffff"+
-		"\u000012\u0005\u000e\u0000\u00002F\u0006\u0001\uffff\uffff\u000034\u0005"+
-		"\u000f\u0000\u00004F\u0006\u0001\uffff\uffff\u000056\u0005\u0010\u0000"+
-		"\u00006F\u0006\u0001\uffff\uffff\u000078\u0005\u0011\u0000\u00008F\u0006"+
-		"\u0001\uffff\uffff\u00009:\u0005\u0012\u0000\u0000:F\u0006\u0001\uffff"+
-		"\uffff\u0000;<\u0005\u0013\u0000\u0000<F\u0006\u0001\uffff\uffff\u0000"+
-		"=>\u0005\u0014\u0000\u0000>F\u0006\u0001\uffff\uffff\u0000?@\u0005\u0015"+
-		"\u0000\u0000@F\u0006\u0001\uffff\uffff\u0000AB\u0005\u0016\u0000\u0000"+
-		"BF\u0006\u0001\uffff\uffff\u0000CD\u0005\u0017\u0000\u0000DF\u0006\u0001"+
-		"\uffff\uffff\u0000E\r\u0001\u0000\u0000\u0000E\u0010\u0001\u0000\u0000"+
-		"\u0000E\u0013\u0001\u0000\u0000\u0000E\u0015\u0001\u0000\u0000\u0000E"+
-		"\u0017\u0001\u0000\u0000\u0000E\u0019\u0001\u0000\u0000\u0000E\u001b\u0001"+
-		"\u0000\u0000\u0000E\u001d\u0001\u0000\u0000\u0000E\u001f\u0001\u0000\u0000"+
-		"\u0000E!\u0001\u0000\u0000\u0000E$\u0001\u0000\u0000\u0000E\'\u0001\u0000"+
-		"\u0000\u0000E*\u0001\u0000\u0000\u0000E-\u0001\u0000\u0000\u0000E/\u0001"+
-		"\u0000\u0000\u0000E1\u0001\u0000\u0000\u0000E3\u0001\u0000\u0000\u0000"+
-		"E5\u0001\u0000\u0000\u0000E7\u0001\u0000\u0000\u0000E9\u0001\u0000\u0000"+
-		"\u0000E;\u0001\u0000\u0000\u0000E=\u0001\u0000\u0000\u0000E?\u0001\u0000"+
-		"\u0000\u0000EA\u0001\u0000\u0000\u0000EC\u0001\u0000\u0000\u0000F\u0003"+
-		"\u0001\u0000\u0000\u0000\u0002\u0007E";
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0003\u0001\u0080\b\u0001\u0001\u0001\u0000\u0000"+
+		"\u0002\u0000\u0002\u0000\u0000\u00ac\u0000\u0007\u0001\u0000\u0000\u0000"+
+		"\u0002\u007f\u0001\u0000\u0000\u0000\u0004\u0006\u0003\u0002\u0001\u0000"+
+		"\u0005\u0004\u0001\u0000\u0000\u0000\u0006\t\u0001\u0000\u0000\u0000\u0007"+
+		"\u0005\u0001\u0000\u0000\u0000\u0007\b\u0001\u0000\u0000\u0000\b\n\u0001"+
+		"\u0000\u0000\u0000\t\u0007\u0001\u0000\u0000\u0000\n\u000b\u0005\u0000"+
+		"\u0000\u0001\u000b\f\u0006\u0000\uffff\uffff\u0000\f\u0001\u0001\u0000"+
+		"\u0000\u0000\r\u000e\u0005\u0001\u0000\u0000\u000e\u000f\u0005.\u0000"+
+		"\u0000\u000f\u0080\u0006\u0001\uffff\uffff\u0000\u0010\u0011\u0005\u0001"+
+		"\u0000\u0000\u0011\u0012\u0005-\u0000\u0000\u0012\u0080\u0006\u0001\uffff"+
+		"\uffff\u0000\u0013\u0014\u0005\u0002\u0000\u0000\u0014\u0080\u0006\u0001"+
+		"\uffff\uffff\u0000\u0015\u0016\u0005\u0003\u0000\u0000\u0016\u0080\u0006"+
+		"\u0001\uffff\uffff\u0000\u0017\u0018\u0005\u0004\u0000\u0000\u0018\u0080"+
+		"\u0006\u0001\uffff\uffff\u0000\u0019\u001a\u0005\u0005\u0000\u0000\u001a"+
+		"\u0080\u0006\u0001\uffff\uffff\u0000\u001b\u001c\u0005\u0006\u0000\u0000"+
+		"\u001c\u0080\u0006\u0001\uffff\uffff\u0000\u001d\u001e\u0005\u0007\u0000"+
+		"\u0000\u001e\u0080\u0006\u0001\uffff\uffff\u0000\u001f \u0005\b\u0000"+
+		"\u0000 \u0080\u0006\u0001\uffff\uffff\u0000!\"\u0005-\u0000\u0000\"#\u0005"+
+		",\u0000\u0000#\u0080\u0006\u0001\uffff\uffff\u0000$%\u0005\t\u0000\u0000"+
+		"%&\u0005-\u0000\u0000&\u0080\u0006\u0001\uffff\uffff\u0000\'(\u0005\n"+
+		"\u0000\u0000()\u0005-\u0000\u0000)\u0080\u0006\u0001\uffff\uffff\u0000"+
+		"*+\u0005\u000b\u0000\u0000+,\u0005-\u0000\u0000,\u0080\u0006\u0001\uffff"+
+		"\uffff\u0000-.\u0005\f\u0000\u0000.\u0080\u0006\u0001\uffff\uffff\u0000"+
+		"/0\u0005\r\u0000\u00000\u0080\u0006\u0001\uffff\uffff\u000012\u0005\u000e"+
+		"\u0000\u00002\u0080\u0006\u0001\uffff\uffff\u000034\u0005\u000f\u0000"+
+		"\u00004\u0080\u0006\u0001\uffff\uffff\u000056\u0005\u0010\u0000\u0000"+
+		"6\u0080\u0006\u0001\uffff\uffff\u000078\u0005\u0011\u0000\u00008\u0080"+
+		"\u0006\u0001\uffff\uffff\u00009:\u0005\u0012\u0000\u0000:\u0080\u0006"+
+		"\u0001\uffff\uffff\u0000;<\u0005\u0013\u0000\u0000<\u0080\u0006\u0001"+
+		"\uffff\uffff\u0000=>\u0005\u0014\u0000\u0000>\u0080\u0006\u0001\uffff"+
+		"\uffff\u0000?@\u0005\u0015\u0000\u0000@\u0080\u0006\u0001\uffff\uffff"+
+		"\u0000AB\u0005\u0016\u0000\u0000B\u0080\u0006\u0001\uffff\uffff\u0000"+
+		"CD\u0005\u0017\u0000\u0000D\u0080\u0006\u0001\uffff\uffff\u0000EF\u0005"+
+		"\u0018\u0000\u0000FG\u0005.\u0000\u0000G\u0080\u0006\u0001\uffff\uffff"+
+		"\u0000HI\u0005\u0019\u0000\u0000IJ\u0005.\u0000\u0000JK\u0005.\u0000\u0000"+
+		"K\u0080\u0006\u0001\uffff\uffff\u0000LM\u0005\u001a\u0000\u0000M\u0080"+
+		"\u0006\u0001\uffff\uffff\u0000NO\u0005\u001b\u0000\u0000OP\u0005.\u0000"+
+		"\u0000PQ\u0005.\u0000\u0000Q\u0080\u0006\u0001\uffff\uffff\u0000RS\u0005"+
+		"\u001c\u0000\u0000ST\u0005.\u0000\u0000T\u0080\u0006\u0001\uffff\uffff"+
+		"\u0000UV\u0005\u001d\u0000\u0000VW\u0005.\u0000\u0000WX\u0005.\u0000\u0000"+
+		"X\u0080\u0006\u0001\uffff\uffff\u0000YZ\u0005\u001e\u0000\u0000Z\u0080"+
+		"\u0006\u0001\uffff\uffff\u0000[\\\u0005\u001f\u0000\u0000\\\u0080\u0006"+
+		"\u0001\uffff\uffff\u0000]^\u0005 \u0000\u0000^\u0080\u0006\u0001\uffff"+
+		"\uffff\u0000_`\u0005!\u0000\u0000`\u0080\u0006\u0001\uffff\uffff\u0000"+
+		"ab\u0005\"\u0000\u0000b\u0080\u0006\u0001\uffff\uffff\u0000cd\u0005#\u0000"+
+		"\u0000d\u0080\u0006\u0001\uffff\uffff\u0000ef\u0005$\u0000\u0000fg\u0005"+
+		"-\u0000\u0000g\u0080\u0006\u0001\uffff\uffff\u0000hi\u0005%\u0000\u0000"+
+		"ij\u0005-\u0000\u0000j\u0080\u0006\u0001\uffff\uffff\u0000kl\u0005&\u0000"+
+		"\u0000lm\u0005.\u0000\u0000mn\u0005-\u0000\u0000n\u0080\u0006\u0001\uffff"+
+		"\uffff\u0000op\u0005\'\u0000\u0000pq\u0005-\u0000\u0000q\u0080\u0006\u0001"+
+		"\uffff\uffff\u0000rs\u0005(\u0000\u0000st\u0005.\u0000\u0000t\u0080\u0006"+
+		"\u0001\uffff\uffff\u0000uv\u0005)\u0000\u0000vw\u0005.\u0000\u0000w\u0080"+
+		"\u0006\u0001\uffff\uffff\u0000xy\u0005*\u0000\u0000yz\u0005.\u0000\u0000"+
+		"z{\u0005.\u0000\u0000{\u0080\u0006\u0001\uffff\uffff\u0000|}\u0005+\u0000"+
+		"\u0000}~\u0005.\u0000\u0000~\u0080\u0006\u0001\uffff\uffff\u0000\u007f"+
+		"\r\u0001\u0000\u0000\u0000\u007f\u0010\u0001\u0000\u0000\u0000\u007f\u0013"+
+		"\u0001\u0000\u0000\u0000\u007f\u0015\u0001\u0000\u0000\u0000\u007f\u0017"+
+		"\u0001\u0000\u0000\u0000\u007f\u0019\u0001\u0000\u0000\u0000\u007f\u001b"+
+		"\u0001\u0000\u0000\u0000\u007f\u001d\u0001\u0000\u0000\u0000\u007f\u001f"+
+		"\u0001\u0000\u0000\u0000\u007f!\u0001\u0000\u0000\u0000\u007f$\u0001\u0000"+
+		"\u0000\u0000\u007f\'\u0001\u0000\u0000\u0000\u007f*\u0001\u0000\u0000"+
+		"\u0000\u007f-\u0001\u0000\u0000\u0000\u007f/\u0001\u0000\u0000\u0000\u007f"+
+		"1\u0001\u0000\u0000\u0000\u007f3\u0001\u0000\u0000\u0000\u007f5\u0001"+
+		"\u0000\u0000\u0000\u007f7\u0001\u0000\u0000\u0000\u007f9\u0001\u0000\u0000"+
+		"\u0000\u007f;\u0001\u0000\u0000\u0000\u007f=\u0001\u0000\u0000\u0000\u007f"+
+		"?\u0001\u0000\u0000\u0000\u007fA\u0001\u0000\u0000\u0000\u007fC\u0001"+
+		"\u0000\u0000\u0000\u007fE\u0001\u0000\u0000\u0000\u007fH\u0001\u0000\u0000"+
+		"\u0000\u007fL\u0001\u0000\u0000\u0000\u007fN\u0001\u0000\u0000\u0000\u007f"+
+		"R\u0001\u0000\u0000\u0000\u007fU\u0001\u0000\u0000\u0000\u007fY\u0001"+
+		"\u0000\u0000\u0000\u007f[\u0001\u0000\u0000\u0000\u007f]\u0001\u0000\u0000"+
+		"\u0000\u007f_\u0001\u0000\u0000\u0000\u007fa\u0001\u0000\u0000\u0000\u007f"+
+		"c\u0001\u0000\u0000\u0000\u007fe\u0001\u0000\u0000\u0000\u007fh\u0001"+
+		"\u0000\u0000\u0000\u007fk\u0001\u0000\u0000\u0000\u007fo\u0001\u0000\u0000"+
+		"\u0000\u007fr\u0001\u0000\u0000\u0000\u007fu\u0001\u0000\u0000\u0000\u007f"+
+		"x\u0001\u0000\u0000\u0000\u007f|\u0001\u0000\u0000\u0000\u0080\u0003\u0001"+
+		"\u0000\u0000\u0000\u0002\u0007\u007f";
 	public static final ATN _ATN =
 		new ATNDeserializer().deserialize(_serializedATN.toCharArray());
 	static {
@@ -31,6 +31,7 @@ public class AST {
 		final List<ParNode> parlist;
 		final List<DecNode> declist; 
 		final Node exp;
+		STentry entry;
 		FunNode(String i, TypeNode rt, List<ParNode> pl, List<DecNode> dl, Node e) {
 	    	id=i; 
 	    	retType=rt; 
@@ -316,6 +317,24 @@ public class AST {
 		public <S,E extends Exception> S accept(BaseASTVisitor<S,E> visitor) throws E {return visitor.visitNode(this);}
 	}
 
+	// field "fieldId" of the object in variable "objectId": only built by OptimizationASTVisitor,
+	// which reads fields this way in the method bodies it inlines
+	public static class FieldReadNode extends Node {
+		final String objectId;
+		final String fieldId;
+		int nestingLevel;
+		STentry entry;
+		STentry fieldEntry;
+
+		public FieldReadNode(String objectId, String fieldId) {
+			this.objectId = objectId;
+			this.fieldId = fieldId;
+		}
+
+		@Override
+		public <S,E extends Exception> S accept(BaseASTVisitor<S,E> visitor) throws E {return visitor.visitNode(this);}
+	}
+
 	public static class NewNode extends Node {
 		final String classId;
 		final List<Node> argList;
@@ -0,0 +1,293 @@
+package compiler;
+
+import java.util.*;
+
+import org.antlr.v4.runtime.ParserRuleContext;
+
+import compiler.AST.*;
+import compiler.FOOLParser.*;
+import compiler.lib.*;
+
+// Builds the AST of ASTGenerationSTVisitor while the program is parsed, as a parse listener
+// of a FOOLParser that does not build the parse tree: the nodes of the rules parsed so far
+// wait on a stack for the rule they are part of, while each context, holding its own tokens
+// only, is dropped as soon as its rule is exited.
+//   parser.setBuildParseTree(false);
+//   parser.addParseListener(listener);
+//   parser.twoStageProg();
+//   Node ast = listener.getAST();
+// Where the parser recovers from a syntax error conjuring a missing token, the token is
+// missing from the context too: the AST of such a program, which is not compiled anyway,
+// may differ from the one of ASTGenerationSTVisitor.
+public class ASTGenerationParseListener extends FOOLBaseListener {
+
+	private static final class Child {
+		final int rule;
+		final Node node;
+		Child(int rule, Node node) { this.rule=rule; this.node=node; }
+	}
+
+	private final List<Child> children = new ArrayList<>(); // nodes of the rules exited, waiting for their parent rule
+	private final List<Integer> marks = new ArrayList<>();   // where the children of each rule being parsed start
+	private Node result; // node of the rule exiting
+
+	public Node getAST() {
+		return children.isEmpty() ? null : children.get(children.size()-1).node;
+	}
+
+	@Override
+	public void enterEveryRule(ParserRuleContext c) {
+		if (c instanceof ProgContext) { // a new parse, or the parse from the start again of twoStageProg()
+			children.clear();
+			marks.clear();
+		}
+		// a binary operation is entered once its left operand has been parsed
+		boolean binary = c instanceof TimesDivContext || c instanceof PlusMinusContext
+			|| c instanceof CompContext || c instanceof AndOrContext;
+		marks.add(children.size() - (binary ? 1 : 0));
+	}
+
+	@Override
+	public void exitEveryRule(ParserRuleContext c) {
+		int mark = marks.remove(marks.size()-1);
+		children.subList(mark, children.size()).clear();
+		children.add(new Child(c.getRuleIndex(), result));
+		result = null;
+	}
+
+	// the i-th child of the rule exiting parsed by "rule", null if it is not there
+	private Node child(int rule, int i) {
+		for (int k = marks.get(marks.size()-1); k < children.size(); k++)
+			if (children.get(k).rule == rule && i-- == 0) return children.get(k).node;
+		return null;
+	}
+
+	// all the children of the rule exiting parsed by "rule"
+	@SuppressWarnings("unchecked")
+	private <T extends Node> List<T> all(int rule) {
+		List<T> nodes = new ArrayList<>();
+		for (int k = marks.get(marks.size()-1); k < children.size(); k++)
+			if (children.get(k).rule == rule) nodes.add((T) children.get(k).node);
+		return nodes;
+	}
+
+	private Node exp(int i) { return child(FOOLParser.RULE_exp, i); }
+
+	private TypeNode type(int i) { return (TypeNode) child(FOOLParser.RULE_type, i); }
+
+	@Override
+	public void exitProg(ProgContext c) {
+		result = child(FOOLParser.RULE_progbody, 0);
+	}
+
+	@Override
+	public void exitLetInProg(LetInProgContext c) {
+		List<DecNode> declist = new ArrayList<>();
+		declist.addAll(all(FOOLParser.RULE_cldec));
+		declist.addAll(all(FOOLParser.RULE_dec));
+		result = new ProgLetInNode(declist, exp(0));
+	}
+
+	@Override
+	public void exitNoDecProg(NoDecProgContext c) {
+		result = new ProgNode(exp(0));
+	}
+
+	@Override
+	public void exitTimesDiv(TimesDivContext c) {
+		if (c.TIMES() != null) {
+			result = new TimesNode(exp(0), exp(1));
+			result.setLine(c.TIMES().getSymbol().getLine());
+		} else {
+			result = new DivNode(exp(0), exp(1));
+			result.setLine(c.DIV().getSymbol().getLine());
+		}
+	}
+
+	@Override
+	public void exitPlusMinus(PlusMinusContext c) {
+		if (c.PLUS() != null) {
+			result = new PlusNode(exp(0), exp(1));
+			result.setLine(c.PLUS().getSymbol().getLine());
+		} else {
+			result = new MinusNode(exp(0), exp(1));
+			result.setLine(c.MINUS().getSymbol().getLine());
+		}
+	}
+
+	@Override
+	public void exitComp(CompContext c) {
+		if (c.LE() != null) {
+			result = new LessEqualNode(exp(0), exp(1));
+			result.setLine(c.LE().getSymbol().getLine());
+		} else if (c.GE() != null) {
+			result = new GreaterEqualNode(exp(0), exp(1));
+			result.setLine(c.GE().getSymbol().getLine());
+		} else {
+			result = new EqualNode(exp(0), exp(1));
+			result.setLine(c.EQ().getSymbol().getLine());
+		}
+	}
+
+	@Override
+	public void exitAndOr(AndOrContext c) {
+		if (c.AND() != null) {
+			result = new AndNode(exp(0), exp(1));
+			result.setLine(c.AND().getSymbol().getLine());
+		} else {
+			result = new OrNode(exp(0), exp(1));
+			result.setLine(c.OR().getSymbol().getLine());
+		}
+	}
+
+	@Override
+	public void exitNot(NotContext c) {
+		result = new NotNode(exp(0));
+		result.setLine(c.NOT().getSymbol().getLine());
+	}
+
+	@Override
+	public void exitVardec(VardecContext c) {
+		if (c.ID()!=null) { //non-incomplete ST
+			result = new VarNode(c.ID().getText(), type(0), exp(0));
+			result.setLine(c.VAR().getSymbol().getLine());
+		}
+	}
+
+	@Override
+	public void exitFundec(FundecContext c) {
+		List<ParNode> parList = new ArrayList<>();
+		for (int i = 1; i < c.ID().size(); i++) {
+			ParNode p = new ParNode(c.ID(i).getText(), type(i));
+			p.setLine(c.ID(i).getSymbol().getLine());
+			parList.add(p);
+		}
+		List<DecNode> decList = all(FOOLParser.RULE_dec);
+		if (c.ID().size()>0) { //non-incomplete ST
+			result = new FunNode(c.ID(0).getText(), type(0), parList, decList, exp(0));
+			result.setLine(c.FUN().getSymbol().getLine());
+		}
+	}
+
+	@Override
+	public void exitIntType(IntTypeContext c) {
+		result = new IntTypeNode();
+	}
+
+	@Override
+	public void exitBoolType(BoolTypeContext c) {
+		result = new BoolTypeNode();
+	}
+
+	@Override
+	public void exitInteger(IntegerContext c) {
+		if (c.NUM() != null) { // missing if the parse bails out before it
+			int v = Integer.parseInt(c.NUM().getText());
+			result = new IntNode(c.MINUS()==null?v:-v);
+		}
+	}
+
+	@Override
+	public void exitTrue(TrueContext c) {
+		result = new BoolNode(true);
+	}
+
+	@Override
+	public void exitFalse(FalseContext c) {
+		result = new BoolNode(false);
+	}
+
+	@Override
+	public void exitIf(IfContext c) {
+		result = new IfNode(exp(0), exp(1), exp(2));
+		result.setLine(c.IF().getSymbol().getLine());
+	}
+
+	@Override
+	public void exitPrint(PrintContext c) {
+		result = new PrintNode(exp(0));
+	}
+
+	@Override
+	public void exitPars(ParsContext c) {
+		result = exp(0);
+	}
+
+	@Override
+	public void exitId(IdContext c) {
+		result = new IdNode(c.ID().getText());
+		result.setLine(c.ID().getSymbol().getLine());
+	}
+
+	@Override
+	public void exitCall(CallContext c) {
+		result = new CallNode(c.ID().getText(), all(FOOLParser.RULE_exp));
+		result.setLine(c.ID().getSymbol().getLine());
+	}
+
+	// OBJECT EXTENSION
+	@Override
+	public void exitCldec(CldecContext c) {
+		List<FieldNode> fields = new ArrayList<>();
+		String superID = null;
+		int startID = 1;
+		if (c.EXTENDS() != null && c.ID().size() > 1) {
+			superID = c.ID(1).getText();
+			startID = 2;
+		}
+		for (int i = startID; i < c.ID().size(); i++) {
+			FieldNode field = new FieldNode(c.ID(i).getText(), type(i - startID));
+			field.setLine(c.ID(i).getSymbol().getLine());
+			fields.add(field);
+		}
+		List<MethodNode> methods = all(FOOLParser.RULE_methdec);
+		if (!c.ID().isEmpty()) {
+			result = new ClassNode(c.ID(0).getText(), superID, fields, methods);
+			result.setLine(c.CLASS().getSymbol().getLine());
+		}
+	}
+
+	@Override
+	public void exitMethdec(MethdecContext c) {
+		List<ParNode> parameterList = new ArrayList<>();
+		for (int i = 1; i < c.ID().size(); i++) {
+			ParNode p = new ParNode(c.ID(i).getText(), type(i));
+			p.setLine(c.ID(i).getSymbol().getLine());
+			parameterList.add(p);
+		}
+		List<DecNode> declarationList = all(FOOLParser.RULE_dec);
+		if (!c.ID().isEmpty()) {
+			result = new MethodNode(c.ID(0).getText(), type(0), parameterList, declarationList, exp(0));
+			result.setLine(c.FUN().getSymbol().getLine());
+		}
+	}
+
+	@Override
+	public void exitNull(NullContext c) {
+		result = new EmptyNode();
+		result.setLine(c.NULL().getSymbol().getLine());
+	}
+
+	@Override
+	public void exitNew(NewContext c) {
+		if (c.ID() != null) {
+			result = new NewNode(c.ID().getText(), all(FOOLParser.RULE_exp));
+			result.setLine(c.ID().getSymbol().getLine());
+		}
+	}
+
+	@Override
+	public void exitDotCall(DotCallContext c) {
+		if (c.ID().size() == 2) {
+			result = new ClassCallNode(c.ID(0).getText(), c.ID(1).getText(), all(FOOLParser.RULE_exp));
+			result.setLine(c.ID(0).getSymbol().getLine());
+		}
+	}
+
+	@Override
+	public void exitIdType(IdTypeContext c) {
+		result = new RefTypeNode(c.ID().getText());
+		result.setLine(c.ID().getSymbol().getLine());
+	}
+
+}
@@ -0,0 +1,91 @@
+package compiler;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.antlr.v4.runtime.*;
+
+// Compiles many FOOL programs in one JVM on a work-stealing ForkJoinPool: each file goes
+// through the phases of Test up to code generation (see Compilation) and gets its .svmo
+// when it has no front-end errors. What the phases print for a file is collected apart
+// and printed in input order, followed by the throughput of the batch.
+//   java compiler.BatchCompiler file-or-directory...
+// Directories are searched for .fool files. -Dthreads=n sets the parallelism (all the
+// processors by default), -Drounds=n compiles the batch n times (to see it once the JVM
+// and the ANTLR caches are warm), -Dparsetree, -Dfold, -Dinline, -Dpeephole and -Ddisplay
+// are as in Test.
+public class BatchCompiler {
+
+    private static class Result {
+    	Path file;
+    	int errors;
+    	int words;
+    	String messages;
+    }
+
+    public static void main(String[] args) throws Exception {
+
+    	List<Path> files = new ArrayList<>();
+    	for (String arg : args) {
+    		Path p = Path.of(arg);
+    		if (Files.isDirectory(p))
+    			try (var walk = Files.walk(p)) {
+    				walk.filter(f -> f.toString().endsWith(".fool")).sorted().forEach(files::add);
+    			}
+    		else files.add(p);
+    	}
+    	if (files.isEmpty()) {
+    		System.out.println("Usage: java compiler.BatchCompiler file-or-directory...");
+    		return;
+    	}
+    	int threads = Integer.getInteger("threads", Runtime.getRuntime().availableProcessors());
+    	int rounds = Integer.getInteger("rounds", 1);
+
+    	PrintStream stdout = ThreadOutput.install();
+    	ForkJoinPool pool = new ForkJoinPool(threads);
+    	try {
+    		for (int round = 1; round <= rounds; round++) {
+    			List<Callable<Result>> tasks = new ArrayList<>();
+    			for (Path f : files) tasks.add(() -> compile(f));
+    			long t = System.nanoTime();
+    			List<Future<Result>> results = pool.invokeAll(tasks);
+    			long elapsed = System.nanoTime() - t;
+    			int failed = 0;
+    			long words = 0;
+    			for (Future<Result> future : results) {
+    				Result r = future.get();
+    				if (r.errors > 0) failed++;
+    				words += r.words;
+    				if (round < rounds) continue; // messages of the last round only
+    				stdout.println(r.file + ": " + (r.errors > 0 ? r.errors + " front-end errors" : r.words + " words of code"));
+    				if (!r.messages.isEmpty()) stdout.print(r.messages.indent(4));
+    			}
+    			stdout.printf("Round %d: %d files (%d with errors, %d words of code) in %.1f ms on %d threads: %.0f files/sec%n",
+    				round, files.size(), failed, words, elapsed / 1e6, threads, files.size() / (elapsed / 1e9));
+    		}
+    	} finally {
+    		pool.shutdown();
+    	}
+    }
+
+    // compiles "file" in this thread, writing its .svmo if there are no errors
+    private static Result compile(Path file) {
+    	Result r = new Result();
+    	r.file = file;
+    	r.messages = ThreadOutput.capture(() -> {
+    		try {
+    			Compilation c = Compilation.compile(CharStreams.fromPath(file), null);
+    			r.errors = c.errors;
+    			if (c.code != null) {
+    				r.words = c.code.getCode().length;
+    				c.objectFile().write(Path.of(file + ".svmo"));
+    			}
+    		} catch (IOException e) {
+    			System.out.println(e);
+    			r.errors = Math.max(r.errors, 1);
+    		}
+    	});
+    	return r;
+    }
+}
@@ -0,0 +1,31 @@
+package compiler;
+
+import java.util.*;
+import compiler.AST.*;
+import compiler.lib.*;
+
+// class hierarchy analysis over the class declarations of a program: a call of a method
+// on an object of static class C runs the method C declares or inherits, whatever the
+// class of the object, unless a subclass of C overrides it
+public class ClassHierarchy {
+
+	private final Map<String, ClassNode> classes = new HashMap<>();
+
+	ClassHierarchy(List<DecNode> declist) {
+		for (DecNode dec : declist)
+			if (dec instanceof ClassNode c) classes.put(c.id, c);
+	}
+
+	// the method run by calls of "methodId" on objects of static class "classId", null if a subclass overrides it
+	MethodNode target(String classId, String methodId) {
+		for (ClassNode c : classes.values()) {
+			if (c.id.equals(classId)) continue;
+			for (String s = c.superId; s != null; s = classes.get(s).superId)
+				if (s.equals(classId))
+					for (MethodNode m : c.methods) if (m.id.equals(methodId)) return null;
+		}
+		for (String s = classId; s != null; s = classes.get(s).superId)
+			for (MethodNode m : classes.get(s).methods) if (m.id.equals(methodId)) return m;
+		return null;
+	}
+}
@@ -3,300 +3,378 @@ package compiler;
 import compiler.AST.*;
 import compiler.lib.*;
 import compiler.exc.*;
-import svm.ExecuteVM;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import static compiler.lib.FOOLlib.*;
-
-public class CodeGenerationASTVisitor extends BaseASTVisitor<String, VoidException> {
+public class CodeGenerationASTVisitor extends BaseASTVisitor<Void, VoidException> {
 	List<List<String>> dispatchTables = new ArrayList<>();
-	CodeGenerationASTVisitor() {}
-	CodeGenerationASTVisitor(boolean debug) {super(false,debug);} //enables print for debugging
+	private final Map<String,List<String>> classDispatch = new HashMap<>(); // dispatch table of each class
+	private ClassHierarchy hierarchy;
+	boolean display = true; // false reaches outer frames following the static chain only
+	int devirtualized = 0; // method calls that jump straight to their method, see visitNode(ClassCallNode)
+	private final Emitter out;
+	private final Map<STentry,String> funLabels = new HashMap<>(); // entry label of each function
+	private int tailParams = -1, tailDecs; // frame of the function whose result is being computed, -1 out of tail position
+	private int tailLeave = -1; // display register that function restores before a tail call, -1 if none
+	private final List<Boolean> displayed = new ArrayList<>(); // by nesting level, whether the display
+	// register holds the frame the code being generated sees at that level (the global one for level 0)
+	private final CompilationContext context; // gives the labels
+	CodeGenerationASTVisitor(Emitter out) { this(out, new CompilationContext()); }
+	CodeGenerationASTVisitor(Emitter out, CompilationContext context) { this.out = out; this.context = context; }
+	CodeGenerationASTVisitor(Emitter out, CompilationContext context, boolean debug) { super(false,debug); this.out = out; this.context = context; } //enables print for debugging
+
+	// visits v out of tail position
+	@Override
+	public Void visit(Visitable v) {
+		tailParams = -1;
+		return super.visit(v);
+	}
+
+	// visits the expression n whose value is the result of the current function, which has
+	// "params" parameters and "decs" local declarations (params -1: n is not in tail position)
+	private void visitTail(Node n, int params, int decs) {
+		tailParams = params;
+		tailDecs = decs;
+		super.visit(n);
+		tailParams = -1;
+	}
 
 
 	@Override
-	public String visitNode(ProgLetInNode n) {
+	public Void visitNode(ProgLetInNode n) {
 		if (print) printNode(n);
-		String declCode = null;
-		for (Node dec : n.declist) declCode=nlJoin(declCode,visit(dec));
-		return nlJoin(
-				"push 0",
-				declCode, // generate code for declarations (allocation)
-				visit(n.exp),
-				"halt",
-				getCode()
-		);
+		hierarchy = new ClassHierarchy(n.declist);
+		displayed(0, display); // the VM starts with the global frame in display register 0
+		out.emit("push", 0);
+		for (Node dec : n.declist) visit(dec); // generate code for declarations (allocation)
+		visit(n.exp);
+		out.emit("halt");
+		out.finish();
+		return null;
 	}
 
 	@Override
-	public String visitNode(ProgNode n) {
+	public Void visitNode(ProgNode n) {
 		if (print) printNode(n);
-		return nlJoin(
-				visit(n.exp),
-				"halt"
-		);
+		visit(n.exp);
+		out.emit("halt");
+		out.finish();
+		return null;
+	}
+
+	// records whether the display register of nesting "level" holds the frame seen at that level
+	// by the code generated next, returning what was recorded before
+	private boolean displayed(int level, boolean d) {
+		while (displayed.size() <= level) displayed.add(false);
+		return displayed.set(level, d);
+	}
+
+	// whether functions declared in "decs" declare functions in turn: these reach the frame
+	// of the current function by its display register, whatever their nesting
+	private static boolean nestsFunctions(List<DecNode> decs) {
+		for (DecNode d : decs)
+			if (d instanceof FunNode f) for (DecNode e : f.declist) if (e instanceof FunNode) return true;
+		return false;
 	}
 
 	@Override
-	public String visitNode(FunNode n) {
+	public Void visitNode(FunNode n) {
 		if (print) printNode(n,n.id);
-		String declCode = null, popDecl = null, popParl = null;
-		for (Node dec : n.declist) {
-			declCode = nlJoin(declCode,visit(dec));
-			popDecl = nlJoin(popDecl,"pop");
-		}
-		for (int i=0;i<n.parlist.size();i++) popParl = nlJoin(popParl,"pop");
-		String funl = freshFunLabel();
-		putCode(
-				nlJoin(
-						funl+":",
-						"cfp", // set $fp to $sp value
-						"lra", // load $ra value
-						declCode, // generate code for local declarations (they use the new $fp!!!)
-						visit(n.exp), // generate code for function body expression
-						"stm", // set $tm to popped value (function result)
-						popDecl, // remove local declarations from stack
-						"sra", // set $ra to popped value
-						"pop", // remove Access Link from stack
-						popParl, // remove parameters from stack
-						"sfp", // set $fp to popped value (Control Link)
-						"ltm", // load $tm value (function result)
-						"lra", // load $ra value
-						"js"  // jump to to popped address
-				)
-		);
-		return "push "+funl;
+		String funl = context.freshFunLabel();
+		funLabels.put(n.entry, funl);
+		int level = n.entry.nl + 1; // of the body
+		boolean enter = display && nestsFunctions(n.declist);
+		boolean outer = displayed(level, enter);
+		out.beginFunction();
+		out.label(funl);
+		out.emit("cfp"); // set $fp to $sp value
+		out.emit("lra"); // load $ra value
+		if (enter) out.emit("enter", level); // set the display register to $fp
+		for (Node dec : n.declist) visit(dec); // generate code for local declarations (they use the new $fp!!!)
+		tailLeave = enter ? level : -1;
+		visitTail(n.exp, n.parlist.size(), n.declist.size()); // generate code for function body expression
+		if (enter) out.emit("leave", level); // restore the display register
+		displayed(level, outer);
+		out.emit("stm"); // set $tm to popped value (function result)
+		for (int i=0;i<n.declist.size();i++) out.emit("pop"); // remove local declarations from stack
+		out.emit("sra"); // set $ra to popped value
+		out.emit("pop"); // remove Access Link from stack
+		for (int i=0;i<n.parlist.size();i++) out.emit("pop"); // remove parameters from stack
+		out.emit("sfp"); // set $fp to popped value (Control Link)
+		out.emit("ltm"); // load $tm value (function result)
+		out.emit("lra"); // load $ra value
+		out.emit("js"); // jump to to popped address
+		out.endFunction();
+		out.emit("push", funl);
+		return null;
 	}
 
 	@Override
-	public String visitNode(VarNode n) {
+	public Void visitNode(VarNode n) {
 		if (print) printNode(n,n.id);
-		return visit(n.exp);
+		visit(n.exp);
+		return null;
 	}
 
 	@Override
-	public String visitNode(PrintNode n) {
+	public Void visitNode(PrintNode n) {
 		if (print) printNode(n);
-		return nlJoin(
-				visit(n.exp),
-				"print"
-		);
+		visit(n.exp);
+		out.emit("print");
+		return null;
 	}
 
 	@Override
-	public String visitNode(IfNode n) {
+	public Void visitNode(IfNode n) {
 		if (print) printNode(n);
-		String l1 = freshLabel();
-		String l2 = freshLabel();
-		return nlJoin(
-				visit(n.cond),
-				"push 1",
-				"beq "+l1,
-				visit(n.el),
-				"b "+l2,
-				l1+":",
-				visit(n.th),
-				l2+":"
-		);
+		int params = tailParams, decs = tailDecs; // the branches are in tail position if the "if" is
+		String l1 = context.freshLabel();
+		String l2 = context.freshLabel();
+		branchIf(n.cond, true, l1);
+		visitTail(n.el, params, decs);
+		out.emit("b", l2);
+		out.label(l1);
+		visitTail(n.th, params, decs);
+		out.label(l2);
+		return null;
 	}
 
 	@Override
-	public String visitNode(EqualNode n) {
+	public Void visitNode(EqualNode n) {
 		if (print) printNode(n);
-		String l1 = freshLabel();
-		String l2 = freshLabel();
-		return nlJoin(
-				visit(n.left),
-				visit(n.right),
-				"beq " + l1,
-				"push 0",
-				"b " + l2,
-				l1 + ":",
-				"push 1",
-				l2 + ":"
-		);
+		visit(n.left);
+		visit(n.right);
+		out.emit("eq");
+		return null;
 	}
 
 
 	@Override
-	public String visitNode(GreaterEqualNode n) {
+	public Void visitNode(GreaterEqualNode n) {
 		if (print) printNode(n);
-		String l1 = freshLabel();
-		String l2 = freshLabel();
-		return nlJoin(
-				visit(n.right),
-				visit(n.left),
-				"bleq " + l1,
-				"push 0",
-				"b " + l2,
-				l1 + ":",
-				"push 1",
-				l2 + ":"
-		);
+		visit(n.left);
+		visit(n.right);
+		out.emit("ge");
+		return null;
 	}
 
 
 	@Override
-	public String visitNode(LessEqualNode n) {
+	public Void visitNode(LessEqualNode n) {
 		if (print) printNode(n);
-		String l1 = freshLabel();
-		String l2 = freshLabel();
-		return nlJoin(
-				visit(n.left),
-				visit(n.right),
-				"bleq " + l1,
-				"push 0",
-				"b " + l2,
-				l1 + ":",
-				"push 1",
-				l2 + ":"
-		);
+		visit(n.left);
+		visit(n.right);
+		out.emit("le");
+		return null;
 	}
 
 	@Override
-	public String visitNode(TimesNode n) {
+	public Void visitNode(TimesNode n) {
 		if (print) printNode(n);
-		return nlJoin(
-				visit(n.left),
-				visit(n.right),
-				"mult"
-		);
+		visit(n.left);
+		visit(n.right);
+		out.emit("mult");
+		return null;
 	}
 
 	@Override
-	public String visitNode(DivNode n) {
+	public Void visitNode(DivNode n) {
 		if (print) printNode(n);
-		return nlJoin(
-				visit(n.left),
-				visit(n.right),
-				"div"
-		);
+		visit(n.left);
+		visit(n.right);
+		out.emit("div");
+		return null;
 	}
 
 	@Override
-	public String visitNode(PlusNode n) {
+	public Void visitNode(PlusNode n) {
 		if (print) printNode(n);
-		return nlJoin(
-				visit(n.left),
-				visit(n.right),
-				"add"
-		);
+		visit(n.left);
+		visit(n.right);
+		out.emit("add");
+		return null;
 	}
 
 	@Override
-	public String visitNode(MinusNode n) {
+	public Void visitNode(MinusNode n) {
 		if (print) printNode(n);
-		return nlJoin(
-				visit(n.left),
-				visit(n.right),
-				"sub"
-		);
+		visit(n.left);
+		visit(n.right);
+		out.emit("sub");
+		return null;
 	}
 
 	@Override
-	public String visitNode(AndNode n) {
+	public Void visitNode(AndNode n) {
 		if (print) printNode(n);
-		String l1 = freshLabel();
-		String l2 = freshLabel();
-		return nlJoin(
-				visit(n.left),
-				visit(n.right),
-				"mult",
-				"push 0",
-				"beq " + l1,
-				"push 1",
-				"b " + l2,
-				l1 + ":",
-				"push 0",
-				l2 + ":"
-		);
+		String l1 = context.freshLabel();
+		String l2 = context.freshLabel();
+		branchIf(n.left, false, l1); // the right operand is evaluated only if the left one is true
+		visit(n.right);
+		out.emit("b", l2);
+		out.label(l1);
+		out.emit("push", 0);
+		out.label(l2);
+		return null;
 	}
 
 	@Override
-	public String visitNode(OrNode n) {
+	public Void visitNode(OrNode n) {
 		if (print) printNode(n);
-		String l1 = freshLabel();
-		String l2 = freshLabel();
-		return nlJoin(
-				visit(n.left),
-				visit(n.right),
-				"add",
-				"push 0",
-				"beq", l1,
-				"push 1",
-				"b", l2,
-				l1 + ":",
-				"push 0",
-				l2 + ":"
-		);
+		String l1 = context.freshLabel();
+		String l2 = context.freshLabel();
+		branchIf(n.left, true, l1); // the right operand is evaluated only if the left one is false
+		visit(n.right);
+		out.emit("b", l2);
+		out.label(l1);
+		out.emit("push", 1);
+		out.label(l2);
+		return null;
 	}
 
 	@Override
-	public String visitNode(NotNode n) {
+	public Void visitNode(NotNode n) {
 		if (print) printNode(n);
-		String l1 = freshLabel();
-		String l2 = freshLabel();
-		return nlJoin(
-				visit(n.right),
-				"push 0",
-				"beq", l1,
-				"push 0",
-				"b", l2,
-				l1 + ":",
-				"push 1",
-				l2 + ":"
-		);
+		visit(n.right);
+		out.emit("not");
+		return null;
+	}
+
+	// jumps to "target" if condition "c" evaluates to "when" and falls through otherwise,
+	// branching on comparisons and connectives directly instead of computing 0 or 1 first
+	private void branchIf(Node c, boolean when, String target) {
+		if (c instanceof NotNode) {
+			branchIf(((NotNode) c).right, !when, target);
+			return;
+		}
+		if (c instanceof AndNode || c instanceof OrNode) {
+			boolean and = c instanceof AndNode;
+			Node left = and ? ((AndNode) c).left : ((OrNode) c).left;
+			Node right = and ? ((AndNode) c).right : ((OrNode) c).right;
+			if (and != when) { // false "and", true "or": either operand decides
+				branchIf(left, when, target);
+				branchIf(right, when, target);
+			} else { // the left operand alone can only decide for the opposite outcome
+				String skip = context.freshLabel();
+				branchIf(left, !when, skip);
+				branchIf(right, when, target);
+				out.label(skip);
+			}
+			return;
+		}
+		if (c instanceof BoolNode) {
+			if (((BoolNode) c).val == when) out.emit("b", target);
+			return;
+		}
+		if (when && c instanceof EqualNode) { // compare and branch in one instruction
+			visit(((EqualNode) c).left);
+			visit(((EqualNode) c).right);
+			out.emit("beq", target);
+		} else if (when && c instanceof LessEqualNode) {
+			visit(((LessEqualNode) c).left);
+			visit(((LessEqualNode) c).right);
+			out.emit("bleq", target);
+		} else { // any other boolean value
+			visit(c);
+			out.emit(when ? "bt" : "bf", target);
+		}
 	}
 
 	@Override
-	public String visitNode(CallNode n) {
+	public Void visitNode(CallNode n) {
 		if (print) printNode(n,n.id);
-		String argCode = null, getAR = null;
-		for (int i=n.arglist.size()-1;i>=0;i--) argCode=nlJoin(argCode,visit(n.arglist.get(i)));
-		for (int i = 0;i<n.nl-n.entry.nl;i++) getAR=nlJoin(getAR,"lw");
-		return nlJoin(
-				"lfp", // load Control Link (pointer to frame of function "id" caller)
-				argCode, // generate code for argument expressions in reversed order
-				"lfp", getAR, // retrieve address of frame containing "id" declaration
-				// by following the static chain (of Access Links)
-				"stm", // set $tm to popped value (with the aim of duplicating top of stack)
-				"ltm", // load Access Link (pointer to frame of function "id" declaration)
-				"ltm", // duplicate top of stack
-				"push "+n.entry.offset, "add", // compute address of "id" declaration
-				"lw", // load address of "id" function
-				"js"  // jump to popped address (saving address of subsequent instruction in $ra)
-		);
+		String label = funLabels.get(n.entry);
+		// a function declared inside the current one needs its frame as Access Link, so it is called as usual
+		if (tailParams >= 0 && label != null && n.nl > n.entry.nl && n.arglist.size() <= tailParams + tailDecs + 1) {
+			tailCall(n, label, tailParams, tailDecs);
+			return null;
+		}
+		out.emit("lfp"); // load Control Link (pointer to frame of function "id" caller)
+		for (int i=n.arglist.size()-1;i>=0;i--) visit(n.arglist.get(i)); // generate code for argument expressions in reversed order
+		if (label != null && n.nl-n.entry.nl > 1 && displayed.get(n.entry.nl)) { // Access Link from the display
+			out.emit("pdis", n.entry.nl);
+			out.emit("jal", label);
+		} else if (label != null) out.emit("call", n.nl-n.entry.nl, label); // push Access Link and jump to the label of "id" saving $ra
+		else out.emit("callf", n.nl-n.entry.nl, n.entry.offset); // push Access Link (frame containing "id" declaration,
+		// reached by following the static chain) and jump to the address of "id" function saving $ra
+		return null;
+	}
+
+	// a call in tail position, to the function at "label", from a frame of "params" parameters
+	// and "decs" local declarations: the arguments and the Access Link are computed on top of
+	// the stack and stored over the frame, right under its Control Link (the stores go above the
+	// words still to be stored, as the new ones take at most the space of the frame); the
+	// stack is cut to the new Access Link and control jumps to the callee with $ra unchanged,
+	// so it returns straight to the caller of the current function
+	private void tailCall(CallNode n, String label, int params, int decs) {
+		int args = n.arglist.size();
+		int hops = n.nl - n.entry.nl;
+		boolean[] inPlace = new boolean[args + 1]; // words not to store: the Access Link, then the arguments
+		if (args == params) {
+			inPlace[0] = hops == 1; // a function declared in the same scope has the same Access Link
+			for (int i = 1; i <= args; i++) // a parameter passed on in its own position
+				inPlace[i] = n.arglist.get(i - 1) instanceof IdNode id && id.nestingLevel == id.entry.nl && id.entry.offset == i;
+		}
+		for (int i = args; i > 0; i--) if (!inPlace[i]) visit(n.arglist.get(i - 1)); // in reversed order, as in a call
+		if (!inPlace[0] && hops > 1 && displayed.get(n.entry.nl)) out.emit("pdis", n.entry.nl);
+		else if (!inPlace[0]) {
+			out.emit("lfp");
+			for (int h = 0; h < hops; h++) out.emit("lw"); // follow the static chain
+		}
+		if (args > params) { // the new frame reaches down to the saved $ra
+			out.emit("lloc", -1);
+			out.emit("sra");
+		}
+		for (int i = 0; i <= args; i++) if (!inPlace[i]) { // store the word on top at $fp+params-args+i
+			out.emit("lfp");
+			out.emit("push", params - args + i);
+			out.emit("add");
+			out.emit("sw");
+		}
+		if (args <= params) {
+			for (int i = 0; i < decs; i++) out.emit("pop"); // remove local declarations from stack
+			out.emit("sra"); // set $ra to popped value
+			for (int i = 0; i < params - args; i++) out.emit("pop");
+		} else // what is left of the local declarations and the saved $ra
+			for (int i = 0; i < decs + 1 + params - args; i++) out.emit("pop");
+		if (tailLeave >= 0) out.emit("leave", tailLeave); // the callee enters its own display register
+		out.emit("b", label);
 	}
 
 	@Override
-	public String visitNode(IdNode n) {
+	public Void visitNode(IdNode n) {
 		if (print) printNode(n,n.id);
-		String getAR = null;
-		for (int i = 0;i<n.nestingLevel-n.entry.nl;i++) getAR=nlJoin(getAR,"lw");
-		return nlJoin(
-				"lfp", getAR, // retrieve address of frame containing "id" declaration
-				// by following the static chain (of Access Links)
-				"push "+n.entry.offset, "add", // compute address of "id" declaration
-				"lw" // load value of "id" variable
-		);
+		loadVar(n.nestingLevel, n.entry.nl, n.entry.offset);
+		return null;
+	}
+
+	// loads the value at "offset" in the frame of nesting "level", from code at nesting "nl":
+	// the display register has it, when set, otherwise it is reached following the static chain
+	private void loadVar(int nl, int level, int offset) {
+		if (nl == level) out.emit("lloc", offset);
+		else if (nl - level > 1 && displayed.get(level)) out.emit("ldis", level, offset);
+		else out.emit("lout", nl - level, offset);
 	}
 
 	@Override
-	public String visitNode(BoolNode n) {
+	public Void visitNode(BoolNode n) {
 		if (print) printNode(n,n.val.toString());
-		return "push "+(n.val?1:0);
+		out.emit("push", n.val?1:0);
+		return null;
 	}
 
 	@Override
-	public String visitNode(IntNode n) {
+	public Void visitNode(IntNode n) {
 		if (print) printNode(n,n.val.toString());
-		return "push "+n.val;
+		out.emit("push", n.val);
+		return null;
 	}
 
 	@Override
-	public String visitNode(ClassNode n){
+	public Void visitNode(ClassNode n){
 		if (print) printNode(n, n.id);
 		List<String> dispatchTable = new ArrayList<>();
 
@@ -308,9 +386,9 @@ public class CodeGenerationASTVisitor extends BaseASTVisitor<String, VoidExcepti
 			}
 		}
 
-		// add methods to dispatch table
+		// add methods to dispatch table, labelled before their code as they may call each other
 		for (MethodNode method : n.methods) {
-			visit(method);
+			method.label = context.freshFunLabel();
 			if (method.offset < dispatchTable.size()) {
 				dispatchTable.set(method.offset, method.label);
 			} else {
@@ -323,129 +401,108 @@ public class CodeGenerationASTVisitor extends BaseASTVisitor<String, VoidExcepti
 
 		// add curr dispatch table to dispatch tables
 		dispatchTables.add(dispatchTable);
+		classDispatch.put(n.id, dispatchTable);
 
-		String dispTableCode = "";
+		for (MethodNode method : n.methods) visit(method);
+
+		out.emit("lhp");
 		for (String label : dispatchTable) {
-			dispTableCode = nlJoin(dispTableCode,
-					"push " + label,
-					"lhp",
-					"sw",
-					"lhp",
-					"push 1",
-					"add",
-					"shp");
+			out.emit("push", label);
+			out.emit("lhp");
+			out.emit("sw");
+			out.emit("lhp");
+			out.emit("push", 1);
+			out.emit("add");
+			out.emit("shp");
 		}
-		return nlJoin("lhp", dispTableCode );
+		return null;
 	}
 
 	@Override
-	public String visitNode(MethodNode n) {
+	public Void visitNode(MethodNode n) {
 		if (print) printNode(n, n.id);
-		String declCode = null, popDecl = null, popParl = null;
-		for (Node dec : n.declarationList) {
-			declCode = nlJoin(declCode, visit(dec));
-			popDecl = nlJoin(popDecl, "pop");
-		}
-
-		// remove parameters from stack
-		for (int i = 0; i < n.parameterList.size(); i++) {
-			popParl = nlJoin(popParl, "pop");
-		}
-
-		String funl = freshFunLabel();
-		n.label = funl;
-
-		putCode(
-				nlJoin(
-						funl + ":",
-						"cfp", // set $fp to $sp value
-						"lra",  // load $ra value
-						declCode, // generate code for local declarations (they use the new $fp!!!)
-						visit(n.exp), // generate code for function body expression
-						"stm", // set $tm to popped value (function result)
-						popDecl, // remove local declarations from stack
-						"sra", // set $ra to popped value
-						"pop", // remove Access Link from stack
-						popParl, // remove parameters from stack
-						"sfp", // set $fp to popped value (Control Link)
-						"ltm", // load $tm value (function result)
-						"lra", // load $ra value
-						"js"  // jump to to popped address
-				)
-		);
+		String funl = n.label; // given by visitNode(ClassNode)
+		boolean enter = display && nestsFunctions(n.declarationList);
+		boolean object = displayed(1, false); // the level of the fields, which has no frame
+		boolean outer = displayed(2, enter);
+
+		out.beginFunction();
+		out.label(funl);
+		out.emit("cfp"); // set $fp to $sp value
+		out.emit("lra"); // load $ra value
+		if (enter) out.emit("enter", 2); // set the display register to $fp
+		for (Node dec : n.declarationList) visit(dec); // generate code for local declarations (they use the new $fp!!!)
+		tailLeave = enter ? 2 : -1;
+		visitTail(n.exp, n.parameterList.size(), n.declarationList.size()); // generate code for function body expression
+		if (enter) out.emit("leave", 2); // restore the display register
+		displayed(2, outer);
+		displayed(1, object);
+		out.emit("stm"); // set $tm to popped value (function result)
+		for (int i = 0; i < n.declarationList.size(); i++) out.emit("pop"); // remove local declarations from stack
+		out.emit("sra"); // set $ra to popped value
+		out.emit("pop"); // remove Access Link from stack
+		for (int i = 0; i < n.parameterList.size(); i++) out.emit("pop"); // remove parameters from stack
+		out.emit("sfp"); // set $fp to popped value (Control Link)
+		out.emit("ltm"); // load $tm value (function result)
+		out.emit("lra"); // load $ra value
+		out.emit("js"); // jump to to popped address
+		out.endFunction();
 
 		return null;
 	}
 	@Override
-	public String visitNode(ClassCallNode n) {
+	public Void visitNode(ClassCallNode n) {
 		if (print) printNode(n, n.classId);
 
 		if (n.methodEntry == null) {
 			System.err.println("Errore: methodEntry non definito per il metodo " + n.methodId);
-			return "push -1"; // return error
+			out.emit("push", -1); // return error
+			return null;
 		}
 
+		out.emit("lfp"); // load Control Link
 		// Parameter code generation
-		String argCode = null, getAR = null;
-		for (int i = n.argList.size() - 1; i >= 0; i--) {
-			argCode = nlJoin(argCode, visit(n.argList.get(i)));
-		}
-
-		for (int i = 0; i < n.nestingLevel - n.entry.nl; i++) {
-			getAR = nlJoin(getAR, "lw");
-		}
-
-		return nlJoin(
-				"lfp",
-				argCode,
-				"lfp", getAR,
-				"push " + n.entry.offset,
-				"add",
-				"lw",
-				"stm",
-				"ltm",
-				"ltm",
-				"lw",
-				"push " + n.methodEntry.offset,
-				"add",
-				"lw",
-				"js"
-		);
+		for (int i = n.argList.size() - 1; i >= 0; i--) visit(n.argList.get(i));
+		loadVar(n.nestingLevel, n.entry.nl, n.entry.offset); // load object pointer (Access Link)
+		if (n.entry.type instanceof RefTypeNode t && hierarchy.target(t.classId, n.methodId) != null) {
+			// no subclass of the static class overrides the method: every object runs the same code
+			out.emit("jal", classDispatch.get(t.classId).get(n.methodEntry.offset));
+			devirtualized++;
+		} else out.emit("callm", n.methodEntry.offset); // jump to the method address found through the dispatch pointer
+		return null;
+	}
+	@Override
+	public Void visitNode(FieldReadNode n) {
+		if (print) printNode(n, n.objectId + "." + n.fieldId);
+		loadVar(n.nestingLevel, n.entry.nl, n.entry.offset); // load object pointer
+		out.emit("push", n.fieldEntry.offset); // fields are below the dispatch pointer
+		out.emit("add");
+		out.emit("lw");
+		return null;
 	}
+
 	@Override
-	public String visitNode(NewNode n) {
+	public Void visitNode(NewNode n) {
 		if (print) printNode(n, n.classId);
-		String argCode = null, heapCode = null;
-		for (Node param : n.argList) {
-			argCode = nlJoin(argCode, visit(param));
-			heapCode = nlJoin(heapCode,
-					"lhp",
-					"sw",
-					"lhp",
-					"push 1",
-					"add",
-					"shp"
-			);
-		}
-		return nlJoin(
-				argCode,
-				heapCode,
-				"push " + (ExecuteVM.MEMSIZE + n.entry.offset),
-				"lw",
-				"lhp",
-				"sw",
-				"lhp",
-				"lhp",
-				"push 1",
-				"add",
-				"shp"
-		);
+		for (Node param : n.argList) visit(param);
+		// tells the collector which fields hold object references
+		List<TypeNode> fields = ((ClassTypeNode) n.entry.type).fields;
+		int refMask = 0;
+		for (int j = 0; j < fields.size() && j < 31; j++)
+			if (fields.get(j) instanceof RefTypeNode) refMask |= 1 << j;
+		out.emit("lgfp"); // the dispatch pointer is in the global environment
+		out.emit("push", n.entry.offset);
+		out.emit("add");
+		out.emit("lw");
+		out.emit("new", n.argList.size(), refMask);
+		return null;
 	}
 	@Override
-	public String visitNode(EmptyNode n) {
+	public Void visitNode(EmptyNode n) {
 		if (print) printNode(n);
-		return "push -1";
+		out.emit("push", -1);
+		return null;
 	}
 
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,38 @@
+package compiler;
+
+import org.antlr.v4.runtime.*;
+import compiler.lib.*;
+
+// Times code generation alone on synthetic programs of n/4, n/2 and n functions, each
+// with a nested function and a call to the previous one: with the streaming emitter
+// time and output grow linearly with n.
+//   java compiler.CodeGenerationBenchmark [n]
+public class CodeGenerationBenchmark {
+    public static void main(String[] args) throws Exception {
+
+    	int n = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    	for (int size : new int[] {n / 4, n / 2, n}) {
+    		Node ast = Compilation.enrichedAST(CharStreams.fromString(synthetic(size)));
+    		System.gc();
+    		long best = Long.MAX_VALUE, chars = 0;
+    		for (int r = 0; r < 3; r++) {
+    			StringBuilder code = new StringBuilder();
+    			long t = System.nanoTime();
+    			new CodeGenerationASTVisitor(new TextEmitter(code)).visit(ast);
+    			best = Math.min(best, System.nanoTime() - t);
+    			chars = code.length();
+    		}
+    		System.out.printf("%d functions: %.1f ms, %d KB of code, %.2f us per function%n",
+    			size, best / 1e6, chars / 1024, best / 1e3 / size);
+    	}
+    }
+
+    private static String synthetic(int functions) {
+    	StringBuilder s = new StringBuilder("let\n");
+    	s.append("  fun f0:int (n:int) n;\n");
+    	for (int f = 1; f < functions; f++)
+    		s.append("  fun f").append(f).append(":int (n:int) let fun g:int (m:int) if (m <= 1) then {m} else {m*2}; in f")
+    			.append(f - 1).append("(g(n)+").append(f).append(");\n");
+    	return s.append("in print(f").append(functions - 1).append("(1));\n").toString();
+    }
+}
@@ -0,0 +1,117 @@
+package compiler;
+
+import java.util.TreeMap;
+import org.antlr.v4.runtime.*;
+import compiler.lib.*;
+import compiler.exc.*;
+import svm.*;
+
+// A FOOL program taken through the phases of Test up to code generation, with a
+// CompilationContext of its own. What the phases report goes to System.out, syntax errors
+// included, and an exception in any of them is reported there as an error of the program.
+// Each thread keeps its lexer and parser from one program to the next; the DFA cache they
+// fill is shared by all of them (see BatchCompiler and CompileServer).
+class Compilation {
+
+    // prints syntax errors to System.out, as the other phases do with theirs
+    private static final BaseErrorListener SYNTAX_ERRORS = new BaseErrorListener() {
+    	@Override
+    	public void syntaxError(Recognizer<?,?> recognizer, Object symbol, int line, int column, String msg, RecognitionException e) {
+    		System.out.println("line " + line + ":" + column + " " + msg);
+    	}
+    };
+
+    private static final ThreadLocal<FOOLLexer> lexers = ThreadLocal.withInitial(() -> {
+    	FOOLLexer lexer = new FOOLLexer(null);
+    	lexer.removeErrorListeners();
+    	lexer.addErrorListener(SYNTAX_ERRORS);
+    	return lexer;
+    });
+
+    private static final ThreadLocal<FOOLParser> parsers = ThreadLocal.withInitial(() -> {
+    	FOOLParser parser = new FOOLParser(null);
+    	parser.removeErrorListeners();
+    	parser.addErrorListener(SYNTAX_ERRORS);
+    	return parser;
+    });
+
+    int errors;       // front-end errors
+    CodeEmitter code; // the code generated, null if there were errors
+
+    // compiles "chars", adding the .asm text to "asm" unless it is null; -Dparsetree, -Dfold,
+    // -Dinline, -Dpeephole and -Ddisplay are as in Test
+    static Compilation compile(CharStream chars, Appendable asm) {
+    	Compilation c = new Compilation();
+    	FOOLLexer lexer = lexers.get();
+    	FOOLParser parser = parsers.get();
+    	try {
+    		lexer.setInputStream(chars);
+    		lexer.lexicalErrors = 0;
+    		parser.setTokenStream(new CommonTokenStream(lexer));
+    		Node ast;
+    		if ("false".equals(System.getProperty("parsetree"))) {
+    			ASTGenerationParseListener listener = new ASTGenerationParseListener();
+    			parser.setBuildParseTree(false);
+    			parser.addParseListener(listener);
+    			try {
+    				parser.twoStageProg();
+    			} finally {
+    				parser.removeParseListeners();
+    				parser.setBuildParseTree(true);
+    			}
+    			ast = listener.getAST();
+    		} else {
+    			ast = new ASTGenerationSTVisitor().visit(parser.twoStageProg());
+    		}
+
+    		CompilationContext context = new CompilationContext();
+    		new SymbolTableASTVisitor(context).visit(ast);
+    		try {
+    			new TypeCheckEASTVisitor(context).visit(ast);
+    		} catch (IncomplException e) {
+    		} catch (TypeException e) {
+    			System.out.println("Type checking error in main program expression: " + e.text);
+    		}
+    		c.errors = lexer.lexicalErrors + parser.getNumberOfSyntaxErrors() + context.stErrors + context.typeErrors;
+    		if (c.errors > 0) return c;
+
+    		if (!"false".equals(System.getProperty("fold"))) {
+    			OptimizationASTVisitor optimizer = new OptimizationASTVisitor();
+    			optimizer.inline = !"false".equals(System.getProperty("inline"));
+    			ast = optimizer.visit(ast);
+    		}
+    		CodeEmitter code = new CodeEmitter();
+    		Emitter out = asm != null ? Emitter.both(code, new TextEmitter(asm)) : code;
+    		CodeGenerationASTVisitor codeGenerator = new CodeGenerationASTVisitor(new Peephole(out, System.getProperty("peephole", "all")), context);
+    		codeGenerator.display = !"false".equals(System.getProperty("display"));
+    		codeGenerator.visit(ast);
+    		c.code = code;
+    	} catch (RuntimeException | StackOverflowError e) {
+    		System.out.println("Compiler failure: " + e);
+    		c.errors = Math.max(c.errors, 1);
+    	}
+    	return c;
+    }
+
+    // the AST of "chars" enriched by the symbol table and the type checker, with what they
+    // report dropped: for the benchmarks, whose programs are known to be correct
+    static Node enrichedAST(CharStream chars) {
+    	ThreadOutput.install();
+    	Node[] ast = new Node[1];
+    	ThreadOutput.capture(() -> {
+    		FOOLParser parser = new FOOLParser(new CommonTokenStream(new FOOLLexer(chars)));
+    		ast[0] = new ASTGenerationSTVisitor().visit(parser.twoStageProg());
+    		CompilationContext context = new CompilationContext();
+    		new SymbolTableASTVisitor(context).visit(ast[0]);
+    		try {
+    			new TypeCheckEASTVisitor(context).visit(ast[0]);
+    		} catch (TypeException e) {
+    		}
+    	});
+    	return ast[0];
+    }
+
+    ObjectFile objectFile() {
+    	return new ObjectFile(code.getCode(), code.getLabels(), new TreeMap<>());
+    }
+}
@@ -0,0 +1,25 @@
+package compiler;
+
+import java.util.*;
+
+// state of the compilation of one program, shared by the visitors of its phases instead of
+// living in static fields: programs compiled one after the other in the same JVM, or at the
+// same time in different threads, do not see each other's labels, errors or classes
+public class CompilationContext {
+
+	int stErrors = 0;
+	int typeErrors = 0;
+	final Map<String, String> superType = new HashMap<>(); // <subClass, superClass>, filled in by type checking
+
+	private int labCount = 0;
+	private int funlabCount = 0;
+
+	// labels starting with "label", as FOOLlib.isFreshLabel expects
+	String freshLabel() {
+		return "label" + (labCount++);
+	}
+
+	String freshFunLabel() {
+		return "function" + (funlabCount++);
+	}
+}
@@ -0,0 +1,73 @@
+package compiler;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+// Has CompileServer compile FOOL programs: "asm" and "svmo" write file.asm or file.svmo next
+// to each file, "run" prints the output of the programs, "stats" the latencies the server
+// has seen. The messages of the compiler are printed for programs with errors.
+//   java compiler.CompileClient asm|svmo|run|stats file...
+// -Dserver is the socket file or localhost port of the server (as for CompileServer),
+// -Dmode the SVM mode for "run" (switch by default), -Drepeat=n sends each file n times
+// and prints the percentiles of the round trips seen by the client.
+public class CompileClient {
+    public static void main(String[] args) throws Exception {
+
+    	if (args.length == 0 || !args[0].matches("asm|svmo|run|stats") || args.length == 1 && !args[0].equals("stats")) {
+    		System.out.println("Usage: java compiler.CompileClient asm|svmo|run|stats file...");
+    		return;
+    	}
+    	String command = args[0];
+    	String mode = System.getProperty("mode", "switch");
+    	int repeat = Integer.getInteger("repeat", 1);
+    	var address = CompileServer.address(System.getProperty("server", CompileServer.DEFAULT_SOCKET));
+
+    	try (SocketChannel server = SocketChannel.open(CompileServer.family(address))) {
+    		server.connect(address);
+    		DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(server)));
+    		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(server)));
+
+    		if (command.equals("stats")) {
+    			out.writeUTF(command);
+    			out.writeUTF(mode);
+    			out.writeInt(0);
+    			out.flush();
+    			in.readInt();
+    			System.out.println("Server: " + new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8));
+    			return;
+    		}
+    		long[] roundTrips = new long[(args.length - 1) * repeat];
+    		int n = 0;
+    		for (int i = 1; i < args.length; i++) {
+    			Path file = Path.of(args[i]);
+    			byte[] source = Files.readAllBytes(file);
+    			int errors = 0;
+    			byte[] reply = null;
+    			for (int r = 0; r < repeat; r++) {
+    				long t = System.nanoTime();
+    				out.writeUTF(command);
+    				out.writeUTF(mode);
+    				out.writeInt(source.length);
+    				out.write(source);
+    				out.flush();
+    				errors = in.readInt();
+    				reply = in.readNBytes(in.readInt());
+    				roundTrips[n++] = System.nanoTime() - t;
+    			}
+    			if (errors > 0) {
+    				System.out.println(file + ": " + errors + " front-end errors");
+    				System.out.print(new String(reply, StandardCharsets.UTF_8).indent(4));
+    			} else if (errors == CompileServer.STOPPED) {
+    				System.out.print(new String(reply, StandardCharsets.UTF_8));
+    			} else if (command.equals("run")) {
+    				System.out.print(new String(reply, StandardCharsets.UTF_8));
+    			} else {
+    				Files.write(Path.of(file + "." + command), reply);
+    			}
+    		}
+    		System.out.println("Round trips: " + CompileServer.latencies(roundTrips));
+    	}
+    }
+}
@@ -0,0 +1,160 @@
+package compiler;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.antlr.v4.runtime.*;
+import svm.*;
+
+// Keeps a JVM compiling FOOL programs for CompileClient, so that each of them finds the
+// JIT-compiled compiler and the ANTLR DFA cache already warm instead of paying for them
+// like a new run of Test does.
+//   java compiler.CompileServer [socket-file | port]
+// It listens on a Unix domain socket (java.io.tmpdir/fool-compile.sock by default), or on
+// a localhost port if the argument is a number. -Dthreads=n sets how many requests are
+// handled at once (all the processors by default), -Dparsetree, -Dfold, -Dinline,
+// -Dpeephole and -Ddisplay are as in Test. A program run is stopped after -Drunmillis milliseconds
+// (10000 by default) or once it prints more than -Drunoutput bytes (1 MB by default).
+// A request is a command (asm, svmo, run or stats) and a mode written with writeUTF, then
+// the length of the program and its UTF-8 bytes; the reply is the number of front-end
+// errors, then the length of the bytes following: the messages of the compiler if there
+// were errors, otherwise the .asm text, the .svmo file, or the output of the program run
+// in the given mode. A run stopped at a limit gets -1 errors, and its output up to there
+// followed by the limit hit. "stats" gets the percentiles of the time taken by the last
+// requests.
+public class CompileServer {
+
+    static final String DEFAULT_SOCKET = System.getProperty("java.io.tmpdir") + "/fool-compile.sock";
+
+    static final int STOPPED = -1; // errors in the reply to a run stopped at a limit
+
+    private static final long RUN_NANOS = Long.getLong("runmillis", 10_000) * 1_000_000;
+    private static final int RUN_OUTPUT = Integer.getInteger("runoutput", 1 << 20);
+
+    // nanoseconds per request, of the last WINDOW ones
+    private static final int WINDOW = 10_000;
+    private static final long[] latencies = new long[WINDOW];
+    private static long requests;
+
+    public static void main(String[] args) throws Exception {
+
+    	SocketAddress address = address(args.length > 0 ? args[0] : DEFAULT_SOCKET);
+    	if (address instanceof UnixDomainSocketAddress a) Files.deleteIfExists(a.getPath()); // left by a server killed
+    	ServerSocketChannel server = ServerSocketChannel.open(family(address));
+    	server.bind(address);
+    	ThreadOutput.install();
+    	ExecutorService pool = Executors.newFixedThreadPool(Integer.getInteger("threads", Runtime.getRuntime().availableProcessors()));
+    	System.out.println("Compile server listening on " + address);
+    	while (true) {
+    		SocketChannel client = server.accept();
+    		pool.execute(() -> serve(client));
+    	}
+    }
+
+    // the localhost port "s" if it is a number, the socket file "s" otherwise
+    static SocketAddress address(String s) {
+    	return s.matches("\\d+") ? new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(s))
+    		: UnixDomainSocketAddress.of(s);
+    }
+
+    static StandardProtocolFamily family(SocketAddress address) {
+    	return address instanceof UnixDomainSocketAddress ? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET;
+    }
+
+    // the p50, p90, p99 and max of "nanos", in milliseconds
+    static String latencies(long[] nanos) {
+    	if (nanos.length == 0) return "no requests";
+    	long[] sorted = nanos.clone();
+    	Arrays.sort(sorted);
+    	StringBuilder s = new StringBuilder(sorted.length + " requests:");
+    	for (int p : new int[] {50, 90, 99}) {
+    		long n = sorted[Math.min(sorted.length - 1, (int) Math.ceil(p / 100.0 * sorted.length) - 1)];
+    		s.append(String.format(" p%d %.2f ms", p, n / 1e6));
+    	}
+    	return s.append(String.format(" max %.2f ms", sorted[sorted.length - 1] / 1e6)).toString();
+    }
+
+    // answers the requests of a client until it closes the connection
+    private static void serve(SocketChannel client) {
+    	try (client;
+    		DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+    		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)))) {
+    		while (true) {
+    			String command;
+    			try {
+    				command = in.readUTF();
+    			} catch (EOFException e) {
+    				return;
+    			}
+    			String mode = in.readUTF();
+    			byte[] source = in.readNBytes(in.readInt());
+    			long t = System.nanoTime();
+    			int[] errors = new int[1];
+    			byte[] reply;
+    			if (command.equals("stats")) {
+    				long[] nanos;
+    				synchronized (latencies) {
+    					nanos = Arrays.copyOf(latencies, (int) Math.min(requests, WINDOW));
+    				}
+    				reply = latencies(nanos).getBytes(StandardCharsets.UTF_8);
+    			} else {
+    				reply = handle(command, mode, new String(source, StandardCharsets.UTF_8), errors);
+    				synchronized (latencies) {
+    					latencies[(int) (requests++ % WINDOW)] = System.nanoTime() - t;
+    				}
+    			}
+    			out.writeInt(errors[0]);
+    			out.writeInt(reply.length);
+    			out.write(reply);
+    			out.flush();
+    		}
+    	} catch (IOException e) {
+    		System.err.println("Compile server: " + e);
+    	}
+    }
+
+    private static byte[] handle(String command, String mode, String source, int[] errors) {
+    	StringBuilder asm = command.equals("asm") ? new StringBuilder() : null;
+    	Compilation[] c = new Compilation[1];
+    	String messages = ThreadOutput.capture(() -> c[0] = Compilation.compile(CharStreams.fromString(source), asm));
+    	errors[0] = c[0].errors;
+    	if (c[0].code == null) return messages.getBytes(StandardCharsets.UTF_8);
+    	switch (command) {
+    		case "asm":
+    			return asm.toString().getBytes(StandardCharsets.UTF_8);
+    		case "svmo":
+    			return c[0].objectFile().toBytes();
+    		case "run":
+    			String[] stopped = new String[1];
+    			ExecuteVM[] vm = new ExecuteVM[1];
+    			String output = ThreadOutput.capture(() -> {
+    				try {
+    					vm[0] = new ExecuteVM(c[0].code.getCode(), ExecuteVM.Mode.valueOf(mode.toUpperCase()));
+    					vm[0].setLabels(c[0].code.getLabels());
+    					vm[0].setDeadline(System.nanoTime() + RUN_NANOS);
+    					vm[0].cpu();
+    				} catch (TimeLimitException e) {
+    					if (stopped[0] == null) stopped[0] = "SVM run stopped: over " + RUN_NANOS / 1_000_000 + " ms";
+    				} catch (TrapException e) {
+    					System.out.println("SVM trap: " + e.getMessage());
+    				} catch (RuntimeException e) {
+    					System.out.println("SVM failure: " + e);
+    				}
+    			}, RUN_OUTPUT, () -> {
+    				// printing, so vm[0] is running: stop it at its next look at the deadline
+    				stopped[0] = "SVM run stopped: output over " + RUN_OUTPUT + " bytes";
+    				vm[0].setDeadline(System.nanoTime());
+    			});
+    			if (stopped[0] == null) return output.getBytes(StandardCharsets.UTF_8);
+    			errors[0] = STOPPED;
+    			return (output + (output.isEmpty() || output.endsWith("\n") ? "" : "\n") + stopped[0] + "\n").getBytes(StandardCharsets.UTF_8);
+    		default:
+    			errors[0] = 1;
+    			return ("Unknown command: " + command).getBytes(StandardCharsets.UTF_8);
+    	}
+    }
+}
@@ -1,5 +1,37 @@
 grammar FOOL;
 
+@parser::header {
+import java.util.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+}
+
+@parser::members {
+// prog() with SLL prediction first, bailing out at the first syntax error, and only then
+// again from the start with full LL prediction and the usual error reporting: SLL gives
+// the same tree for correct programs and spares the full-context prediction of exp
+public ProgContext twoStageProg() {
+	List<ANTLRErrorListener> listeners = new ArrayList<>(getErrorListeners());
+	removeErrorListeners(); // the error bailing out is reported by the second stage
+	getInterpreter().setPredictionMode(PredictionMode.SLL);
+	setErrorHandler(new BailErrorStrategy());
+	try {
+		return prog();
+	} catch (ParseCancellationException e) {
+		listeners.forEach(this::addErrorListener);
+		listeners = null;
+		reset();
+		getInterpreter().setPredictionMode(PredictionMode.LL);
+		setErrorHandler(new DefaultErrorStrategy());
+		return prog();
+	} finally {
+		if (listeners != null) listeners.forEach(this::addErrorListener);
+		getInterpreter().setPredictionMode(PredictionMode.LL);
+		setErrorHandler(new DefaultErrorStrategy());
+	}
+}
+}
+
 @lexer::members {
 public int lexicalErrors=0;
 }
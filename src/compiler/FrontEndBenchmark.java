@@ -0,0 +1,102 @@
+package compiler;
+
+import java.lang.ref.Reference;
+import org.antlr.v4.runtime.*;
+import compiler.lib.*;
+import compiler.exc.*;
+
+// Compares, on the synthetic programs of ParseBenchmark, the AST built by
+// ASTGenerationSTVisitor from the parse tree with the one ASTGenerationParseListener builds
+// during the parse: the time from the source to the AST, and the heap still live once the
+// AST is complete, which is the peak for the parse tree, all of it live at that point. The
+// two ASTs are checked to be the same once enriched.
+//   java compiler.FrontEndBenchmark [n [rounds]]
+public class FrontEndBenchmark {
+    public static void main(String[] args) throws Exception {
+
+    	int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    	int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    	ThreadOutput.install();
+    	for (int size : new int[] {n / 4, n / 2, n}) {
+    		String source = ParseBenchmark.synthetic(size);
+    		if (!enriched(parseTree(source)).equals(enriched(listener(source)))) {
+    			System.out.println("ASTGenerationSTVisitor and ASTGenerationParseListener disagree.");
+    			System.exit(1);
+    		}
+
+    		long treeBest = Long.MAX_VALUE, listenerBest = Long.MAX_VALUE;
+    		for (int r = 0; r < rounds; r++) {
+    			long t = System.nanoTime();
+    			parseTree(source);
+    			treeBest = Math.min(treeBest, System.nanoTime() - t);
+    			t = System.nanoTime();
+    			listener(source);
+    			listenerBest = Math.min(listenerBest, System.nanoTime() - t);
+    		}
+
+    		long base = liveHeap();
+    		FOOLParser parser = parser(source);
+    		ParserRuleContext st = parser.twoStageProg();
+    		Node ast = new ASTGenerationSTVisitor().visit(st);
+    		long treeHeap = liveHeap() - base;
+    		Reference.reachabilityFence(parser);
+    		Reference.reachabilityFence(st);
+    		Reference.reachabilityFence(ast);
+    		parser = null;
+    		st = null;
+    		ast = null;
+    		base = liveHeap();
+    		parser = parser(source);
+    		ASTGenerationParseListener listener = new ASTGenerationParseListener();
+    		parser.setBuildParseTree(false);
+    		parser.addParseListener(listener);
+    		parser.twoStageProg();
+    		ast = listener.getAST();
+    		long listenerHeap = liveHeap() - base;
+    		Reference.reachabilityFence(parser);
+    		Reference.reachabilityFence(ast);
+
+    		System.out.printf("%d functions, %d KB of FOOL:%n", size, source.length() / 1024);
+    		System.out.printf("  parse tree: %.1f ms, %.1f MB live%n", treeBest / 1e6, treeHeap / 1048576.0);
+    		System.out.printf("  during the parse: %.1f ms, %.1f MB live (%.1fx less)%n",
+    			listenerBest / 1e6, listenerHeap / 1048576.0, (double) treeHeap / listenerHeap);
+    	}
+    }
+
+    private static FOOLParser parser(String source) {
+    	return new FOOLParser(new CommonTokenStream(new FOOLLexer(CharStreams.fromString(source))));
+    }
+
+    private static Node parseTree(String source) {
+    	return new ASTGenerationSTVisitor().visit(parser(source).twoStageProg());
+    }
+
+    private static Node listener(String source) {
+    	FOOLParser parser = parser(source);
+    	ASTGenerationParseListener listener = new ASTGenerationParseListener();
+    	parser.setBuildParseTree(false);
+    	parser.addParseListener(listener);
+    	parser.twoStageProg();
+    	return listener.getAST();
+    }
+
+    // the AST enriched as printed by PrintEASTVisitor
+    private static String enriched(Node ast) {
+    	return ThreadOutput.capture(() -> {
+    		CompilationContext context = new CompilationContext();
+    		new SymbolTableASTVisitor(context).visit(ast);
+    		try {
+    			new TypeCheckEASTVisitor(context).visit(ast);
+    		} catch (TypeException e) {
+    			System.out.println("Type checking error in main program expression: " + e.text);
+    		}
+    		new PrintEASTVisitor().visit(ast);
+    	});
+    }
+
+    private static long liveHeap() {
+    	Runtime runtime = Runtime.getRuntime();
+    	for (int i = 0; i < 3; i++) System.gc();
+    	return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,54 @@
+package compiler;
+
+import org.antlr.v4.runtime.*;
+import compiler.lib.*;
+import svm.*;
+
+// Runs, for nesting depths 1 to 10, a loop reading 16 times per iteration a variable
+// declared that many levels out, with outer frames reached following the static chain and
+// through the display registers. The same instructions run either way, as lout follows
+// all the Access Links in one instruction: what differs is the links followed, 16 x depth
+// per iteration with the static chain, none through the display, and only the time shows
+// it. Through the display it stays flat with the depth; with the static chain it grows, to
+// about twice as much by depth 10, but not steadily: from one depth to the next it can
+// move by 20-30% either way.
+//   java compiler.NestingBenchmark [iterations [mode]]
+public class NestingBenchmark {
+    public static void main(String[] args) throws Exception {
+
+    	int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    	ExecuteVM.Mode mode = args.length > 1 ? ExecuteVM.Mode.valueOf(args[1].toUpperCase()) : ExecuteVM.Mode.SWITCH;
+    	for (int depth = 1; depth <= 10; depth++) {
+    		Node ast = Compilation.enrichedAST(CharStreams.fromString(synthetic(depth, iterations)));
+    		StringBuilder line = new StringBuilder("depth " + depth + ":");
+    		for (boolean display : new boolean[] {false, true}) {
+    			CodeEmitter code = new CodeEmitter();
+    			CodeGenerationASTVisitor generator = new CodeGenerationASTVisitor(code);
+    			generator.display = display;
+    			generator.visit(ast);
+    			long best = Long.MAX_VALUE, cycles = 0;
+    			for (int r = 0; r < 10; r++) {
+    				ExecuteVM vm = new ExecuteVM(code.getCode(), mode);
+    				long t = System.nanoTime();
+    				ThreadOutput.capture(vm::cpu); // the program prints its result
+    				best = Math.min(best, System.nanoTime() - t);
+    				cycles = vm.getCycles();
+    			}
+    			line.append(String.format(" %s %.1f ms", display ? "display" : "static chain", best / 1e6));
+    			if (mode == ExecuteVM.Mode.SWITCH) line.append(" (").append(cycles).append(" instructions)");
+    		}
+    		System.out.println(line);
+    	}
+    }
+
+    // f0 declares f1, ..., f(depth-1) declares "loop", which adds the parameter x of f0,
+    // depth Access Links away, 16 times per iteration, calling itself in tail position
+    private static String synthetic(int depth, int iterations) {
+    	StringBuilder s = new StringBuilder("let\n  fun f0:int (x:int) let\n");
+    	for (int f = 1; f < depth; f++) s.append("  fun f").append(f).append(":int (k:int) let\n");
+    	s.append("  fun loop:int (k:int, acc:int) if (k == 0) then {acc} else {loop(k - 1, acc").append(" + x".repeat(16)).append(")};\n");
+    	for (int f = depth - 1; f > 0; f--) s.append("  in ").append(f == depth - 1 ? "loop(k, 0)" : "f" + (f + 1) + "(k)").append(";\n");
+    	s.append("  in ").append(depth == 1 ? "loop(" + iterations + ", 0)" : "f1(" + iterations + ")").append(";\n");
+    	return s.append("in print(f0(3));\n").toString();
+    }
+}
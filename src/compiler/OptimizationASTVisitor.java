@@ -0,0 +1,574 @@
+package compiler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import compiler.AST.*;
+import compiler.exc.*;
+import compiler.lib.*;
+
+//visitNode(n) returns the optimized version of a type-checked Node n: n itself if nothing
+//changed inside it, otherwise a new node (with the symbol table information of n) or one
+//of its subtrees. Operators over constants are folded with the arithmetic of the SVM,
+//identities (x+0, x*1, true&&x, !!x, ...) are simplified and "if" over a constant condition
+//keeps only the branch taken. Subtrees are dropped only if they would not run anyway or
+//are free of effects (no calls, print, new or division that could trap).
+//Calls to small functions without local declarations, and to methods that no subclass
+//overrides, are replaced by the callee body, with its parameters replaced by the arguments
+//and its other names seen from the call site (see Inlining); the result is optimized again.
+public class OptimizationASTVisitor extends BaseASTVisitor<Node,VoidException> {
+
+	static final int INLINE_SIZE = 12; // nodes in the largest body inlined
+
+	boolean inline = true; // whether calls are inlined
+	int folded = 0;  // rewrites done
+	int removed = 0; // nodes removed from the tree by them
+	int inlined = 0; // calls replaced by the body of the callee
+
+	private final Map<Node,Integer> sizes = new IdentityHashMap<>(); // nodes in the subtrees built, 1 if missing
+	private final Map<STentry,FunNode> functions = new IdentityHashMap<>();
+	private ClassHierarchy classes;
+	private final Deque<Inlining> inlining = new ArrayDeque<>(); // bodies being inlined, innermost first
+	private final List<String> decisions = new ArrayList<>();   // one line per call considered for inlining
+
+	// a callee body being visited in place of a call: its parameters (the entries at "level")
+	// stand for "args", the fields of a method are those of "receiver", and the names declared
+	// outside of it are reached from the nesting level "nl" of the call, along the same static
+	// chain, as the callee is declared in a scope enclosing the call
+	private static class Inlining {
+		final DecNode callee;
+		final int level;
+		final List<Node> args;
+		final int nl;
+		final IdNode receiver;
+		Inlining(DecNode callee, int level, List<Node> args, int nl, IdNode receiver) {
+			this.callee = callee;
+			this.level = level;
+			this.args = args;
+			this.nl = nl;
+			this.receiver = receiver;
+		}
+	}
+
+	OptimizationASTVisitor() {}
+	OptimizationASTVisitor(boolean debug) { super(false,debug); } // enables print for debugging
+
+	private int size(Node n) {
+		Integer s = sizes.get(n);
+		return s == null ? 1 : s;
+	}
+
+	// n with its size recorded
+	private Node sized(Node n, int size) {
+		if (size > 1) sizes.put(n, size);
+		return n;
+	}
+
+	// "result" takes the place of subtree "n", whose line it keeps if it is a new node
+	private Node rewrite(Node n, Node result) {
+		folded++;
+		removed += size(n) - size(result);
+		if (result.getLine() < 0) result.setLine(n.getLine());
+		return result;
+	}
+
+	private static Integer intValue(Node n) {
+		return n instanceof IntNode ? ((IntNode) n).val : null;
+	}
+
+	private static Boolean boolValue(Node n) {
+		return n instanceof BoolNode ? ((BoolNode) n).val : null;
+	}
+
+	// whether evaluating n has no effect besides its value (reading a field of null fails in
+	// the SVM as calling a method on it does, so field reads count as pure)
+	private static boolean pure(Node n) {
+		if (n instanceof IntNode || n instanceof BoolNode || n instanceof IdNode || n instanceof EmptyNode) return true;
+		if (n instanceof FieldReadNode) return true;
+		if (n instanceof PlusNode) return pure(((PlusNode) n).left) && pure(((PlusNode) n).right);
+		if (n instanceof MinusNode) return pure(((MinusNode) n).left) && pure(((MinusNode) n).right);
+		if (n instanceof TimesNode) return pure(((TimesNode) n).left) && pure(((TimesNode) n).right);
+		if (n instanceof EqualNode) return pure(((EqualNode) n).left) && pure(((EqualNode) n).right);
+		if (n instanceof LessEqualNode) return pure(((LessEqualNode) n).left) && pure(((LessEqualNode) n).right);
+		if (n instanceof GreaterEqualNode) return pure(((GreaterEqualNode) n).left) && pure(((GreaterEqualNode) n).right);
+		if (n instanceof AndNode) return pure(((AndNode) n).left) && pure(((AndNode) n).right);
+		if (n instanceof OrNode) return pure(((OrNode) n).left) && pure(((OrNode) n).right);
+		if (n instanceof NotNode) return pure(((NotNode) n).right);
+		return false;
+	}
+
+	// the operands of expression n, null for the nodes inlined bodies cannot contain
+	private static List<Node> operands(Node n) {
+		if (n instanceof IntNode || n instanceof BoolNode || n instanceof IdNode || n instanceof EmptyNode) return List.of();
+		if (n instanceof PlusNode p) return List.of(p.left, p.right);
+		if (n instanceof MinusNode p) return List.of(p.left, p.right);
+		if (n instanceof TimesNode p) return List.of(p.left, p.right);
+		if (n instanceof DivNode p) return List.of(p.left, p.right);
+		if (n instanceof EqualNode p) return List.of(p.left, p.right);
+		if (n instanceof LessEqualNode p) return List.of(p.left, p.right);
+		if (n instanceof GreaterEqualNode p) return List.of(p.left, p.right);
+		if (n instanceof AndNode p) return List.of(p.left, p.right);
+		if (n instanceof OrNode p) return List.of(p.left, p.right);
+		if (n instanceof NotNode p) return List.of(p.right);
+		if (n instanceof PrintNode p) return List.of(p.exp);
+		if (n instanceof IfNode p) return List.of(p.cond, p.th, p.el);
+		if (n instanceof CallNode p) return p.arglist;
+		if (n instanceof ClassCallNode p) return p.argList;
+		if (n instanceof NewNode p) return p.argList;
+		return null;
+	}
+
+	// nodes in the body at "level" of a function (a method if "method"), -1 if it cannot be
+	// moved to a call site: it calls one of its parameters or, in a method, it uses anything
+	// but parameters, fields, operators and "new" (globals are not reachable from methods)
+	private static int bodySize(Node n, int level, boolean method) {
+		List<Node> operands = operands(n);
+		if (operands == null) return -1;
+		if (n instanceof IdNode id && method && id.entry.nl < level - 1) return -1;
+		if (n instanceof CallNode c && (method || c.entry.nl == level)) return -1;
+		if (n instanceof ClassCallNode && method) return -1;
+		int size = 1;
+		for (Node o : operands) {
+			int s = bodySize(o, level, method);
+			if (s < 0) return -1;
+			size += s;
+		}
+		return size;
+	}
+
+	private static final int AS_RECEIVER = 1 << 16; // a parameter some method is called on
+
+	// times the parameter at "offset" of a body at "level" can be read in one evaluation of n
+	private static int uses(Node n, int level, int offset) {
+		if (n instanceof IdNode id) return id.entry.nl == level && id.entry.offset == offset ? 1 : 0;
+		if (n instanceof IfNode i)
+			return uses(i.cond, level, offset) + Math.max(uses(i.th, level, offset), uses(i.el, level, offset));
+		int u = n instanceof ClassCallNode c && c.entry.nl == level && c.entry.offset == offset ? AS_RECEIVER : 0;
+		for (Node o : operands(n)) u += uses(o, level, offset);
+		return u;
+	}
+
+	private static boolean calls(Node n, STentry entry) {
+		if (n instanceof CallNode c && c.entry == entry) return true;
+		for (Node o : operands(n)) if (calls(o, entry)) return true;
+		return false;
+	}
+
+	// why the call of "callee" with "args" is not inlined, null if it is
+	private String reject(DecNode callee, List<DecNode> decs, Node body, int level, List<Node> args) {
+		for (Inlining in : inlining) if (in.callee == callee) return "recursive";
+		if (!decs.isEmpty()) return "has local declarations";
+		int size = bodySize(body, level, callee instanceof MethodNode);
+		if (size < 0) return "body cannot be moved";
+		if (callee instanceof FunNode f && calls(body, f.entry)) return "recursive";
+		if (size > INLINE_SIZE) return "too large (" + size + " nodes)";
+		for (int i = 0; i < args.size(); i++) {
+			Node a = args.get(i);
+			int u = uses(body, level, i + 1);
+			// a variable can be read again, another value only if the body is not calling a method
+			// on it, and an expression only if it has no effects and is needed at most once
+			if (a instanceof IdNode) continue;
+			if ((a instanceof IntNode || a instanceof BoolNode || a instanceof EmptyNode) && u < AS_RECEIVER) continue;
+			if (pure(a) && u <= 1) continue;
+			return "argument " + (i + 1) + (pure(a) ? " is used more than once" : " has effects");
+		}
+		return null;
+	}
+
+	// the body of the call c (the arguments already visited) in place of it, or c itself
+	private Node inline(CallNode c) {
+		FunNode f = functions.get(c.entry);
+		if (!inline || f == null) return c; // a parameter or a method called by name
+		String site = f.id + " at line " + c.getLine();
+		String reason = reject(f, f.declist, f.exp, f.entry.nl + 1, c.arglist);
+		if (reason != null) {
+			decisions.add("not inlined " + site + ": " + reason);
+			return c;
+		}
+		decisions.add("inlined " + site);
+		inlined++;
+		inlining.push(new Inlining(f, f.entry.nl + 1, c.arglist, c.nl, null));
+		try {
+			return visit(f.exp);
+		} finally {
+			inlining.pop();
+		}
+	}
+
+	private Node inline(ClassCallNode c) {
+		if (!inline) return c;
+		String classId = ((RefTypeNode) c.entry.type).classId;
+		MethodNode m = classes.target(classId, c.methodId);
+		String site = classId + "." + c.methodId + " at line " + c.getLine();
+		String reason = m == null ? "overridden in a subclass" : reject(m, m.declarationList, m.exp, c.methodEntry.nl + 1, c.argList);
+		if (reason != null) {
+			decisions.add("not inlined " + site + ": " + reason);
+			return c;
+		}
+		decisions.add("inlined " + site);
+		inlined++;
+		IdNode receiver = new IdNode(c.classId);
+		receiver.entry = c.entry;
+		receiver.nestingLevel = c.nestingLevel;
+		inlining.push(new Inlining(m, c.methodEntry.nl + 1, c.argList, c.nestingLevel, receiver));
+		try {
+			return visit(m.exp);
+		} finally {
+			inlining.pop();
+		}
+	}
+
+	private void declare(List<DecNode> decs) {
+		for (DecNode d : decs) {
+			if (d instanceof FunNode f) {
+				functions.put(f.entry, f);
+				declare(f.declist);
+			} else if (d instanceof ClassNode c)
+				for (MethodNode m : c.methods) declare(m.declarationList);
+		}
+	}
+
+	// the inlining decisions taken, one per line
+	String inliningReport() {
+		StringBuilder report = new StringBuilder();
+		for (String d : decisions) report.append(d).append('\n');
+		return report.toString();
+	}
+
+	private List<Node> visitAll(List<Node> nodes) {
+		List<Node> result = new ArrayList<>();
+		for (Node n : nodes) result.add(visit(n));
+		return result;
+	}
+
+	private List<DecNode> visitDecs(List<DecNode> decs) {
+		List<DecNode> result = new ArrayList<>();
+		for (DecNode d : decs) result.add((DecNode) visit(d));
+		return result;
+	}
+
+	private static boolean same(List<? extends Node> a, List<? extends Node> b) {
+		for (int i = 0; i < a.size(); i++) if (a.get(i) != b.get(i)) return false;
+		return true;
+	}
+
+	private static Node line(Node n, Node from) {
+		n.setLine(from.getLine());
+		return n;
+	}
+
+	private int sizeOf(List<Node> nodes) {
+		int s = 0;
+		for (Node n : nodes) s += size(n);
+		return s;
+	}
+
+	// declarations
+
+	@Override
+	public Node visitNode(ProgLetInNode n) {
+		if (print) printNode(n);
+		declare(n.declist);
+		classes = new ClassHierarchy(n.declist);
+		List<DecNode> declist = visitDecs(n.declist);
+		Node exp = visit(n.exp);
+		if (same(n.declist, declist) && exp == n.exp) return n;
+		return line(new ProgLetInNode(declist, exp), n);
+	}
+
+	@Override
+	public Node visitNode(ProgNode n) {
+		if (print) printNode(n);
+		Node exp = visit(n.exp);
+		return exp == n.exp ? n : line(new ProgNode(exp), n);
+	}
+
+	@Override
+	public Node visitNode(FunNode n) {
+		if (print) printNode(n,n.id);
+		List<DecNode> declist = visitDecs(n.declist);
+		Node exp = visit(n.exp);
+		if (same(n.declist, declist) && exp == n.exp) return n;
+		FunNode f = new FunNode(n.id, n.retType, n.parlist, declist, exp);
+		f.entry = n.entry;
+		return line(f, n);
+	}
+
+	@Override
+	public Node visitNode(ParNode n) {
+		if (print) printNode(n,n.id);
+		return n;
+	}
+
+	@Override
+	public Node visitNode(VarNode n) {
+		if (print) printNode(n,n.id);
+		Node exp = visit(n.exp);
+		return exp == n.exp ? n : line(new VarNode(n.id, n.getType(), exp), n);
+	}
+
+	@Override
+	public Node visitNode(ClassNode n) {
+		if (print) printNode(n,n.id);
+		List<MethodNode> methods = new ArrayList<>();
+		for (MethodNode m : n.methods) methods.add((MethodNode) visit(m));
+		if (same(n.methods, methods)) return n;
+		ClassNode c = new ClassNode(n.id, n.superId, n.fields, methods);
+		c.superEntry = n.superEntry;
+		c.setType(n.getType());
+		return line(c, n);
+	}
+
+	@Override
+	public Node visitNode(FieldNode n) {
+		if (print) printNode(n,n.id);
+		return n;
+	}
+
+	@Override
+	public Node visitNode(MethodNode n) {
+		if (print) printNode(n,n.id);
+		List<DecNode> declist = visitDecs(n.declarationList);
+		Node exp = visit(n.exp);
+		if (same(n.declarationList, declist) && exp == n.exp) return n;
+		MethodNode m = new MethodNode(n.id, n.returnType, n.parameterList, declist, exp);
+		m.offset = n.offset;
+		m.setType(n.getType());
+		return line(m, n);
+	}
+
+	// expressions
+
+	@Override
+	public Node visitNode(PrintNode n) {
+		if (print) printNode(n);
+		Node exp = visit(n.exp);
+		return sized(exp == n.exp ? n : line(new PrintNode(exp), n), 1 + size(exp));
+	}
+
+	@Override
+	public Node visitNode(IfNode n) {
+		if (print) printNode(n);
+		Node cond = visit(n.cond), th = visit(n.th), el = visit(n.el);
+		Node r = sized(cond == n.cond && th == n.th && el == n.el ? n : line(new IfNode(cond, th, el), n),
+				1 + size(cond) + size(th) + size(el));
+		Boolean c = boolValue(cond);
+		if (c != null) return rewrite(r, c ? th : el);
+		if (Boolean.TRUE.equals(boolValue(th)) && Boolean.FALSE.equals(boolValue(el))) return rewrite(r, cond);
+		return r;
+	}
+
+	@Override
+	public Node visitNode(NotNode n) {
+		if (print) printNode(n);
+		Node right = visit(n.right);
+		Node r = sized(right == n.right ? n : line(new NotNode(right), n), 1 + size(right));
+		Boolean c = boolValue(right);
+		if (c != null) return rewrite(r, new BoolNode(!c));
+		if (right instanceof NotNode) return rewrite(r, ((NotNode) right).right);
+		return r;
+	}
+
+	@Override
+	public Node visitNode(AndNode n) {
+		if (print) printNode(n);
+		Node left = visit(n.left), right = visit(n.right);
+		Node r = sized(left == n.left && right == n.right ? n : line(new AndNode(left, right), n), 1 + size(left) + size(right));
+		Boolean l = boolValue(left), rv = boolValue(right);
+		if (l != null) return rewrite(r, l ? right : left); // the right operand would not run if false
+		if (rv != null && (rv || pure(left))) return rewrite(r, rv ? left : right);
+		return r;
+	}
+
+	@Override
+	public Node visitNode(OrNode n) {
+		if (print) printNode(n);
+		Node left = visit(n.left), right = visit(n.right);
+		Node r = sized(left == n.left && right == n.right ? n : line(new OrNode(left, right), n), 1 + size(left) + size(right));
+		Boolean l = boolValue(left), rv = boolValue(right);
+		if (l != null) return rewrite(r, l ? left : right);
+		if (rv != null && (!rv || pure(left))) return rewrite(r, rv ? right : left);
+		return r;
+	}
+
+	@Override
+	public Node visitNode(EqualNode n) {
+		if (print) printNode(n);
+		Node left = visit(n.left), right = visit(n.right);
+		Node r = sized(left == n.left && right == n.right ? n : line(new EqualNode(left, right), n), 1 + size(left) + size(right));
+		Integer li = intValue(left), ri = intValue(right);
+		if (li != null && ri != null) return rewrite(r, new BoolNode(li.intValue() == ri.intValue()));
+		Boolean lb = boolValue(left), rb = boolValue(right);
+		if (lb != null && rb != null) return rewrite(r, new BoolNode(lb.booleanValue() == rb.booleanValue()));
+		if (left instanceof EmptyNode && right instanceof EmptyNode) return rewrite(r, new BoolNode(true));
+		return r;
+	}
+
+	@Override
+	public Node visitNode(LessEqualNode n) {
+		if (print) printNode(n);
+		Node left = visit(n.left), right = visit(n.right);
+		Node r = sized(left == n.left && right == n.right ? n : line(new LessEqualNode(left, right), n), 1 + size(left) + size(right));
+		Integer li = intValue(left), ri = intValue(right);
+		if (li != null && ri != null) return rewrite(r, new BoolNode(li <= ri));
+		return r;
+	}
+
+	@Override
+	public Node visitNode(GreaterEqualNode n) {
+		if (print) printNode(n);
+		Node left = visit(n.left), right = visit(n.right);
+		Node r = sized(left == n.left && right == n.right ? n : line(new GreaterEqualNode(left, right), n), 1 + size(left) + size(right));
+		Integer li = intValue(left), ri = intValue(right);
+		if (li != null && ri != null) return rewrite(r, new BoolNode(li >= ri));
+		return r;
+	}
+
+	@Override
+	public Node visitNode(PlusNode n) {
+		if (print) printNode(n);
+		Node left = visit(n.left), right = visit(n.right);
+		Node r = sized(left == n.left && right == n.right ? n : line(new PlusNode(left, right), n), 1 + size(left) + size(right));
+		Integer li = intValue(left), ri = intValue(right);
+		if (li != null && ri != null) return rewrite(r, new IntNode(li + ri));
+		if (Integer.valueOf(0).equals(li)) return rewrite(r, right);
+		if (Integer.valueOf(0).equals(ri)) return rewrite(r, left);
+		return r;
+	}
+
+	@Override
+	public Node visitNode(MinusNode n) {
+		if (print) printNode(n);
+		Node left = visit(n.left), right = visit(n.right);
+		Node r = sized(left == n.left && right == n.right ? n : line(new MinusNode(left, right), n), 1 + size(left) + size(right));
+		Integer li = intValue(left), ri = intValue(right);
+		if (li != null && ri != null) return rewrite(r, new IntNode(li - ri));
+		if (Integer.valueOf(0).equals(ri)) return rewrite(r, left);
+		return r;
+	}
+
+	@Override
+	public Node visitNode(TimesNode n) {
+		if (print) printNode(n);
+		Node left = visit(n.left), right = visit(n.right);
+		Node r = sized(left == n.left && right == n.right ? n : line(new TimesNode(left, right), n), 1 + size(left) + size(right));
+		Integer li = intValue(left), ri = intValue(right);
+		if (li != null && ri != null) return rewrite(r, new IntNode(li * ri));
+		if (Integer.valueOf(1).equals(li)) return rewrite(r, right);
+		if (Integer.valueOf(1).equals(ri)) return rewrite(r, left);
+		if (Integer.valueOf(0).equals(li) && pure(right)) return rewrite(r, left);
+		if (Integer.valueOf(0).equals(ri) && pure(left)) return rewrite(r, right);
+		return r;
+	}
+
+	@Override
+	public Node visitNode(DivNode n) {
+		if (print) printNode(n);
+		Node left = visit(n.left), right = visit(n.right);
+		Node r = sized(left == n.left && right == n.right ? n : line(new DivNode(left, right), n), 1 + size(left) + size(right));
+		Integer li = intValue(left), ri = intValue(right);
+		if (li != null && ri != null && ri != 0) return rewrite(r, new IntNode(li / ri)); // division by 0 still traps at run time
+		if (Integer.valueOf(1).equals(ri)) return rewrite(r, left);
+		return r;
+	}
+
+	@Override
+	public Node visitNode(CallNode n) {
+		if (print) printNode(n,n.id);
+		List<Node> arglist = visitAll(n.arglist);
+		Inlining in = inlining.peek();
+		CallNode c = n;
+		if (!same(n.arglist, arglist) || in != null) {
+			c = new CallNode(n.id, arglist);
+			c.entry = n.entry;
+			c.nl = in == null ? n.nl : in.nl;
+			line(c, n);
+		}
+		sized(c, 1 + sizeOf(arglist));
+		return inline(c);
+	}
+
+	@Override
+	public Node visitNode(ClassCallNode n) {
+		if (print) printNode(n,n.classId+"."+n.methodId);
+		List<Node> argList = visitAll(n.argList);
+		Inlining in = inlining.peek();
+		ClassCallNode c = n;
+		if (!same(n.argList, argList) || in != null) {
+			// called on a parameter, a variable (see reject) takes its place
+			IdNode receiver = in != null && n.entry.nl == in.level ? (IdNode) in.args.get(n.entry.offset - 1) : null;
+			c = new ClassCallNode(receiver != null ? receiver.id : n.classId, n.methodId, argList);
+			c.entry = receiver != null ? receiver.entry : n.entry;
+			c.methodEntry = n.methodEntry;
+			c.nestingLevel = receiver != null ? receiver.nestingLevel : in != null ? in.nl : n.nestingLevel;
+			line(c, n);
+		}
+		sized(c, 1 + sizeOf(argList));
+		return inline(c);
+	}
+
+	@Override
+	public Node visitNode(NewNode n) {
+		if (print) printNode(n,n.classId);
+		List<Node> argList = visitAll(n.argList);
+		if (same(n.argList, argList)) return sized(n, 1 + sizeOf(argList));
+		NewNode c = new NewNode(n.classId, argList);
+		c.entry = n.entry;
+		return sized(line(c, n), 1 + sizeOf(argList));
+	}
+
+	@Override
+	public Node visitNode(FieldReadNode n) {
+		if (print) printNode(n,n.objectId+"."+n.fieldId);
+		return n;
+	}
+
+	@Override
+	public Node visitNode(IdNode n) {
+		if (print) printNode(n,n.id);
+		Inlining in = inlining.peek();
+		if (in == null) return n;
+		if (n.entry.nl == in.level) { // a parameter
+			Node arg = in.args.get(n.entry.offset - 1);
+			if (!(arg instanceof IdNode a)) return arg;
+			IdNode id = new IdNode(a.id); // read again where the parameter is
+			id.entry = a.entry;
+			id.nestingLevel = a.nestingLevel;
+			return line(id, a);
+		}
+		if (in.receiver != null) { // a field
+			FieldReadNode f = new FieldReadNode(in.receiver.id, n.id);
+			f.entry = in.receiver.entry;
+			f.nestingLevel = in.receiver.nestingLevel;
+			f.fieldEntry = n.entry;
+			return line(f, n);
+		}
+		IdNode id = new IdNode(n.id);
+		id.entry = n.entry;
+		id.nestingLevel = in.nl;
+		return line(id, n);
+	}
+
+	@Override
+	public Node visitNode(BoolNode n) {
+		if (print) printNode(n,n.val.toString());
+		return n;
+	}
+
+	@Override
+	public Node visitNode(IntNode n) {
+		if (print) printNode(n,n.val.toString());
+		return n;
+	}
+
+	@Override
+	public Node visitNode(EmptyNode n) {
+		if (print) printNode(n);
+		return n;
+	}
+}
@@ -0,0 +1,141 @@
+package compiler;
+
+import java.util.*;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import svm.*;
+
+// Times FOOLParser on synthetic programs of n/4, n/2 and n functions with large nested
+// expressions, and SVMParser on the code generated for them, parsing with full LL
+// prediction and with twoStageProg()/twoStageAssembly(), after checking that both give the
+// same parse tree and the same code. The input is tokenized before the clock starts.
+//   java compiler.ParseBenchmark [n [rounds]]
+public class ParseBenchmark {
+    public static void main(String[] args) throws Exception {
+
+    	int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    	int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    	for (int size : new int[] {n / 4, n / 2, n}) {
+    		String source = synthetic(size);
+    		StringBuilder asm = new StringBuilder();
+    		if (Compilation.compile(CharStreams.fromString(source), asm).errors > 0) {
+    			System.out.println("The synthetic program has errors.");
+    			System.exit(1);
+    		}
+    		FOOLParser ll = foolParser(source), twoStage = foolParser(source);
+    		SVMParser svmLL = svmParser(asm), svmTwoStage = svmParser(asm);
+    		if (!ll.prog().toStringTree(ll).equals(twoStage.twoStageProg().toStringTree(twoStage))) {
+    			System.out.println("LL and two-stage FOOLParser disagree.");
+    			System.exit(1);
+    		}
+    		svmLL.assembly();
+    		svmTwoStage.twoStageAssembly();
+    		if (!Arrays.equals(svmLL.code, svmTwoStage.code) || !svmLL.getLabels().equals(svmTwoStage.getLabels())) {
+    			System.out.println("LL and two-stage SVMParser disagree.");
+    			System.exit(1);
+    		}
+
+    		long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+    		for (int r = 0; r < rounds; r++) {
+    			FOOLParser p = foolParser(source);
+    			long t = System.nanoTime();
+    			p.prog();
+    			best[0] = Math.min(best[0], System.nanoTime() - t);
+    			p = foolParser(source);
+    			t = System.nanoTime();
+    			p.twoStageProg();
+    			best[1] = Math.min(best[1], System.nanoTime() - t);
+    			SVMParser q = svmParser(asm);
+    			t = System.nanoTime();
+    			q.assembly();
+    			best[2] = Math.min(best[2], System.nanoTime() - t);
+    			q = svmParser(asm);
+    			t = System.nanoTime();
+    			q.twoStageAssembly();
+    			best[3] = Math.min(best[3], System.nanoTime() - t);
+    		}
+    		System.out.printf("%d functions, %d KB of FOOL, %d KB of SVM:%n", size, source.length() / 1024, asm.length() / 1024);
+    		report("FOOLParser", best[0], best[1], source.length());
+    		report("SVMParser", best[2], best[3], asm.length());
+    	}
+    }
+
+    private static void report(String name, long ll, long twoStage, int chars) {
+    	System.out.printf("  %s: LL %.1f ms (%.1f MB/s), SLL then LL %.1f ms (%.1f MB/s), %.1fx%n",
+    		name, ll / 1e6, chars / (ll / 1e3), twoStage / 1e6, chars / (twoStage / 1e3), (double) ll / twoStage);
+    }
+
+    // a parser on the tokens of "source", with the tokens already read
+    private static FOOLParser foolParser(String source) {
+    	CommonTokenStream tokens = new CommonTokenStream(new FOOLLexer(CharStreams.fromString(source)));
+    	tokens.fill();
+    	FOOLParser parser = new FOOLParser(tokens);
+    	parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+    	return parser;
+    }
+
+    private static SVMParser svmParser(CharSequence asm) {
+    	CommonTokenStream tokens = new CommonTokenStream(new SVMLexer(CharStreams.fromString(asm.toString())));
+    	tokens.fill();
+    	return new SVMParser(tokens);
+    }
+
+    // functions f1 ... fn, each returning an expression of depth 7 over its parameters,
+    // calls to the previous functions and conditionals included
+    static String synthetic(int functions) {
+    	Random random = new Random(42);
+    	StringBuilder s = new StringBuilder("let\n");
+    	for (int f = 1; f <= functions; f++) {
+    		s.append("  fun f").append(f).append(":int (x:int, y:int) ");
+    		expression(s, random, f, 7);
+    		s.append(";\n");
+    	}
+    	return s.append("in print(f").append(functions).append("(1, 2));\n").toString();
+    }
+
+    private static void expression(StringBuilder s, Random random, int f, int depth) {
+    	if (depth == 0) {
+    		switch (random.nextInt(3)) {
+    			case 0 -> s.append(random.nextInt(100));
+    			case 1 -> s.append('x');
+    			default -> s.append('y');
+    		}
+    		return;
+    	}
+    	switch (random.nextInt(f > 1 ? 6 : 5)) {
+    		case 0, 1 -> {
+    			expression(s, random, f, depth - 1);
+    			s.append(random.nextBoolean() ? " + " : " - ");
+    			expression(s, random, f, depth - 1);
+    		}
+    		case 2 -> {
+    			expression(s, random, f, depth - 1);
+    			s.append(" * ");
+    			expression(s, random, f, depth - 1);
+    		}
+    		case 3 -> {
+    			s.append('(');
+    			expression(s, random, f, depth - 1);
+    			s.append(')');
+    		}
+    		case 4 -> {
+    			s.append("if (");
+    			expression(s, random, f, depth / 2);
+    			s.append(random.nextBoolean() ? " <= " : " == ");
+    			expression(s, random, f, depth / 2);
+    			s.append(") then {");
+    			expression(s, random, f, depth - 1);
+    			s.append("} else {");
+    			expression(s, random, f, depth - 1);
+    			s.append('}');
+    		}
+    		default -> {
+    			s.append('f').append(1 + random.nextInt(f - 1)).append('(');
+    			expression(s, random, f, depth / 2);
+    			s.append(", ");
+    			expression(s, random, f, depth / 2);
+    			s.append(')');
+    		}
+    	}
+    }
+}
@@ -0,0 +1,46 @@
+package compiler;
+
+import org.antlr.v4.runtime.*;
+import compiler.lib.*;
+import svm.*;
+
+// Generates each program with and without the peephole rules, runs both versions in
+// SWITCH mode, checks that they print the same, and reports code words, executed
+// instructions and the hits of each rule.
+//   java compiler.PeepholeReport [file.fool ...]
+public class PeepholeReport {
+    public static void main(String[] args) throws Exception {
+
+    	String[] files = args.length > 0 ? args : new String[] {"quicksort.fool", "bankloan.fool", "prova.fool", "prova2.fool"};
+    	System.out.printf("%-16s %12s %12s %14s %14s %8s%n", "program", "words", "optimized", "cycles", "optimized", "saved");
+    	for (String file : files) {
+    		Node ast = Compilation.enrichedAST(CharStreams.fromFileName(file));
+    		Run plain = run(ast, "none");
+    		Run optimized = run(ast, "all");
+    		if (!plain.output.equals(optimized.output))
+    			System.out.println(file + ": the optimized code prints \"" + optimized.output + "\" instead of \"" + plain.output + "\"");
+    		System.out.printf("%-16s %12d %12d %14d %14d %7.1f%%%n", file, plain.words, optimized.words,
+    			plain.cycles, optimized.cycles, 100.0 * (plain.cycles - optimized.cycles) / plain.cycles);
+    		for (String rule : Peephole.RULES) System.out.printf("    %-16s %6d%n", rule, optimized.peephole.hits(rule));
+    	}
+    }
+
+    private static class Run {
+    	Peephole peephole;
+    	int words;
+    	long cycles;
+    	String output;
+    }
+
+    private static Run run(Node ast, String rules) {
+    	Run run = new Run();
+    	CodeEmitter code = new CodeEmitter();
+    	run.peephole = new Peephole(code, rules);
+    	new CodeGenerationASTVisitor(run.peephole).visit(ast);
+    	run.words = code.getCode().length;
+    	ExecuteVM vm = new ExecuteVM(code.getCode());
+    	run.output = ThreadOutput.capture(vm::cpu).trim().replace('\n', ' ');
+    	run.cycles = vm.getCycles();
+    	return run;
+    }
+}
@@ -242,6 +242,14 @@ public class PrintEASTVisitor extends BaseEASTVisitor<Void,VoidException> {
 		return null;
 	}
 
+	@Override
+	public Void visitNode(FieldReadNode n) {
+		printNode(n, n.objectId + "." + n.fieldId + " nesting level: " + n.nestingLevel);
+		visit(n.entry);
+		visit(n.fieldEntry);
+		return null;
+	}
+
 	@Override
 	public Void visitNode(NewNode n) {
 		final String id = n.classId + " nesting level: " + n.entry.nl;
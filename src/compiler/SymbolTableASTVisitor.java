@@ -11,10 +11,11 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void,VoidException> {
 	private final Map<String, Map<String, STentry>> classTable = new HashMap<>();
 	private int nestingLevel=0; // current nesting level
 	private int decOffset=-2; // offset of local declarations => current nesting level
-	int stErrors=0;
+	private final CompilationContext context; // counts the errors
 
-	SymbolTableASTVisitor() {}
-	SymbolTableASTVisitor(boolean debug) {super(debug);} // enables print for debugging
+	SymbolTableASTVisitor() { this(new CompilationContext()); }
+	SymbolTableASTVisitor(CompilationContext context) { this.context = context; }
+	SymbolTableASTVisitor(CompilationContext context, boolean debug) {super(debug); this.context = context;} // enables print for debugging
 
 	private STentry stLookup(String id) {
 		int j = nestingLevel;
@@ -49,10 +50,11 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void,VoidException> {
 		List<TypeNode> parTypes = new ArrayList<>();
 		for (ParNode par : n.parlist) parTypes.add(par.getType());
 		STentry entry = new STentry(nestingLevel, new ArrowTypeNode(parTypes,n.retType),decOffset--);
+		n.entry = entry;
 		//inserimento di ID nella symtable
 		if (hm.put(n.id, entry) != null) {
 			System.out.println("Fun id " + n.id + " at line "+ n.getLine() +" already declared");
-			stErrors++;
+			context.stErrors++;
 		}
 		//creare una nuova hashmap per la symTable
 		nestingLevel++;
@@ -65,7 +67,7 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void,VoidException> {
 		for (ParNode par : n.parlist)
 			if (hmn.put(par.id, new STentry(nestingLevel,par.getType(),parOffset++)) != null) {
 				System.out.println("Par id " + par.id + " at line "+ n.getLine() +" already declared");
-				stErrors++;
+				context.stErrors++;
 			}
 		for (Node dec : n.declist) visit(dec);
 		visit(n.exp);
@@ -84,7 +86,7 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void,VoidException> {
 		//inserimento di ID nella symtable
 		if (hm.put(n.id, entry) != null) {
 			System.out.println("Var id " + n.id + " at line "+ n.getLine() +" already declared");
-			stErrors++;
+			context.stErrors++;
 		}
 		return null;
 	}
@@ -190,7 +192,7 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void,VoidException> {
 		STentry entry = stLookup(n.id);
 		if (entry == null) {
 			System.out.println("Fun id " + n.id + " at line "+ n.getLine() + " not declared");
-			stErrors++;
+			context.stErrors++;
 		} else {
 			n.entry = entry;
 			n.nl = nestingLevel;
@@ -205,7 +207,7 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void,VoidException> {
 		STentry entry = stLookup(n.id);
 		if (entry == null) {
 			System.out.println("Var or Par id " + n.id + " at line "+ n.getLine() + " not declared");
-			stErrors++;
+			context.stErrors++;
 		} else {
 			n.entry = entry;
 			n.nestingLevel = nestingLevel;
@@ -251,7 +253,7 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void,VoidException> {
 
 		if (globalSymTable.put(n.id, entry) != null) {
 			System.out.println("Class id " + n.id + " at line "+ n.getLine() +" already declared");
-			stErrors++;
+			context.stErrors++;
 		}
 
 		// virtual table management
@@ -271,7 +273,7 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void,VoidException> {
 			if (print) printNode(field);
 			if (fieldsAndMethods.contains(field.id)) {
 				System.out.println("Field or Method " + field.id + " at line " + field.getLine() + " already declared ");
-				stErrors++;
+				context.stErrors++;
 			} else {
 				STentry superEntry = virtualTable.get(field.id);
 				STentry fieldEntry;
@@ -280,7 +282,7 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void,VoidException> {
 				} else {
 					if (superEntry.type instanceof ArrowTypeNode) {
 						System.out.println("Can't ovverride method with field, line: " + field.getLine());
-						stErrors++;
+						context.stErrors++;
 					}
 					fieldEntry =  new STentry(nestingLevel, field.getType(), superEntry.offset);
 				}
@@ -297,7 +299,7 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void,VoidException> {
 		for (MethodNode method : n.methods) {
 			if (fieldsAndMethods.contains(method.id)) {
 				System.out.println("Method: " + method.id + " at line " + method.getLine() + " already declared");
-				stErrors++;
+				context.stErrors++;
 			} else {
 				fieldsAndMethods.add(method.id);
 				visit(method);
@@ -324,7 +326,7 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void,VoidException> {
 		} else {
 			if (!(superEntry.type instanceof ArrowTypeNode)) {
 				System.out.println("Cannot override field " + n.id + " at line " + n.getLine() + " with method " + n.id);
-				stErrors++;
+				context.stErrors++;
 
 			}
 			methodEntry = new STentry(nestingLevel, superEntry.type, superEntry.offset);
@@ -341,7 +343,7 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void,VoidException> {
 		for (ParNode param : n.parameterList) {
 			if (methodScope.put(param.id, new STentry(nestingLevel, param.getType(), parametersOffset++)) != null) {
 				System.out.println("Parameter: " + param.id + " at line " + n.getLine() + " was already declared");
-				stErrors++;
+				context.stErrors++;
 			}
 		}
 		for (Node dec : n.declarationList) {
@@ -359,11 +361,11 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void,VoidException> {
 		STentry entry = stLookup(n.classId);
 		if (entry == null) {
 			System.out.println(n.classId + " at line: " + n.getLine() + " not declared");
-			stErrors++;
+			context.stErrors++;
 		} else {
 			if (!(entry.type instanceof RefTypeNode)) {
 				System.out.println(n.classId + " at line: " + n.getLine() + " is not a RefTypeNode");
-				stErrors++;
+				context.stErrors++;
 			}
 			n.entry = entry;
 			n.nestingLevel = nestingLevel;
@@ -372,7 +374,7 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void,VoidException> {
 			STentry methodEntry = classTable.get(classRef.classId).get(n.methodId);
 			if (methodEntry == null) {
 				System.out.println("Method: " + n.methodId + " at line: " + n.getLine() + ", was not declared");
-				stErrors++;
+				context.stErrors++;
 			} else {
 				n.methodEntry = methodEntry;
 			}
@@ -390,7 +392,7 @@ public class SymbolTableASTVisitor extends BaseASTVisitor<Void,VoidException> {
 			n.entry = symTable.getFirst().get(n.classId);
 		} else {
 			System.out.println("Class " + n.classId + " at line: " + n.getLine() + " was not declared");
-			stErrors++;
+			context.stErrors++;
 		}
 		for (Node arg : n.argList) {
 			visit(arg);
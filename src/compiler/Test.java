@@ -10,27 +10,43 @@ import svm.*;
 public class Test {
     public static void main(String[] args) throws Exception {
    			
-    	String fileName = "bankloan.fool";
+    	String fileName = args.length > 0 ? args[0] : "bankloan.fool";
+    	ExecuteVM.Mode mode = args.length > 1 ? ExecuteVM.Mode.valueOf(args[1].toUpperCase()) : ExecuteVM.Mode.SWITCH;
+    	int memsize = args.length > 2 ? Integer.parseInt(args[2]) : ExecuteVM.DEFAULT_MEMSIZE;
 
     	CharStream chars = CharStreams.fromFileName(fileName);
     	FOOLLexer lexer = new FOOLLexer(chars);
     	CommonTokenStream tokens = new CommonTokenStream(lexer);
     	FOOLParser parser = new FOOLParser(tokens);
 
-    	System.out.println("Generating ST via lexer and parser.");
-    	ParseTree st = parser.prog();
-    	System.out.println("You had "+lexer.lexicalErrors+" lexical errors and "+
-    		parser.getNumberOfSyntaxErrors()+" syntax errors.\n");
+    	Node ast;
+    	// -Dparsetree=false builds the AST during the parse, without the ST
+    	if ("false".equals(System.getProperty("parsetree"))) {
+    		System.out.println("Generating AST via lexer and parser.");
+    		ASTGenerationParseListener listener = new ASTGenerationParseListener();
+    		parser.setBuildParseTree(false);
+    		parser.addParseListener(listener);
+    		parser.twoStageProg();
+    		ast = listener.getAST();
+    		System.out.println("You had "+lexer.lexicalErrors+" lexical errors and "+
+    			parser.getNumberOfSyntaxErrors()+" syntax errors.\n");
+    	} else {
+    		System.out.println("Generating ST via lexer and parser.");
+    		ParseTree st = parser.twoStageProg();
+    		System.out.println("You had "+lexer.lexicalErrors+" lexical errors and "+
+    			parser.getNumberOfSyntaxErrors()+" syntax errors.\n");
+
+    		System.out.println("Generating AST.");
+    		ASTGenerationSTVisitor visitor = new ASTGenerationSTVisitor(); // use true to visualize the ST
+    		ast = visitor.visit(st);
+    		System.out.println("");
+    	}
 
-    	System.out.println("Generating AST.");
-    	ASTGenerationSTVisitor visitor = new ASTGenerationSTVisitor(); // use true to visualize the ST
-    	Node ast = visitor.visit(st);
-    	System.out.println("");
+    	CompilationContext context = new CompilationContext(); // shared by the phases from here on
 
     	System.out.println("Enriching AST via symbol table.");
-    	SymbolTableASTVisitor symtableVisitor = new SymbolTableASTVisitor();
-    	symtableVisitor.visit(ast);
-    	System.out.println("You had " + symtableVisitor.stErrors+" symbol table errors.\n");
+    	new SymbolTableASTVisitor(context).visit(ast);
+    	System.out.println("You had " + context.stErrors+" symbol table errors.\n");
 
     	System.out.println("Visualizing Enriched AST.");
     	new PrintEASTVisitor().visit(ast);
@@ -38,7 +54,7 @@ public class Test {
 
     	System.out.println("Checking Types.");
     	try {
-    		TypeCheckEASTVisitor typeCheckVisitor = new TypeCheckEASTVisitor();
+    		TypeCheckEASTVisitor typeCheckVisitor = new TypeCheckEASTVisitor(context);
     		TypeNode mainType = typeCheckVisitor.visit(ast);
     		System.out.print("Type of main program expression is: ");
     		new PrintEASTVisitor().visit(mainType);
@@ -47,35 +63,53 @@ public class Test {
     	} catch (TypeException e) {
     		System.out.println("Type checking error in main program expression: " + e.text);
     	}
-    	System.out.println("You had " + FOOLlib.typeErrors + " type checking errors.\n");
+    	System.out.println("You had " + context.typeErrors + " type checking errors.\n");
 
-    	int frontEndErrors = lexer.lexicalErrors+parser.getNumberOfSyntaxErrors()+symtableVisitor.stErrors+FOOLlib.typeErrors;
+    	int frontEndErrors = lexer.lexicalErrors+parser.getNumberOfSyntaxErrors()+context.stErrors+context.typeErrors;
 		System.out.println("You had a total of "+frontEndErrors+" front-end errors.\n");
 
 		if ( frontEndErrors > 0) System.exit(1);
 
+    	// -Dfold=false skips constant folding and inlining, -Dinline=false inlining only
+    	if (!"false".equals(System.getProperty("fold"))) {
+    		System.out.println("Optimizing AST.");
+    		OptimizationASTVisitor optimizer = new OptimizationASTVisitor();
+    		optimizer.inline = !"false".equals(System.getProperty("inline"));
+    		ast = optimizer.visit(ast);
+    		System.out.print(optimizer.inliningReport());
+    		System.out.println("Inlined "+optimizer.inlined+" calls.");
+    		System.out.println("Folded "+optimizer.folded+" expressions, removing "+optimizer.removed+" nodes.\n");
+    	}
+
+    	// code goes straight into memory; the .asm text is written only with -Dasm=true;
+    	// -Dpeephole=none, or a list of Peephole.RULES, picks the peephole rules applied;
+    	// -Ddisplay=false reaches outer frames following the static chain, as before display registers
     	System.out.println("Generating code.");
-    	String code = new CodeGenerationASTVisitor().visit(ast);
-    	BufferedWriter out = new BufferedWriter(new FileWriter(fileName+".asm"));
-    	out.write(code);
-    	out.close();
+    	CodeEmitter code = new CodeEmitter();
+    	BufferedWriter asm = Boolean.getBoolean("asm") ? new BufferedWriter(new FileWriter(fileName+".asm")) : null;
+    	Peephole peephole = new Peephole(asm != null ? Emitter.both(code, new TextEmitter(asm)) : code, System.getProperty("peephole", "all"));
+    	CodeGenerationASTVisitor codeGenerator = new CodeGenerationASTVisitor(peephole, context);
+    	codeGenerator.display = !"false".equals(System.getProperty("display"));
+    	codeGenerator.visit(ast);
+    	if (asm != null) asm.close();
+    	System.out.println("Devirtualized "+codeGenerator.devirtualized+" method calls.");
+    	System.out.print(peephole.report());
     	System.out.println("");
 
-    	System.out.println("Assembling generated code.");
-    	CharStream charsASM = CharStreams.fromFileName(fileName+".asm");
-    	SVMLexer lexerASM = new SVMLexer(charsASM);
-    	CommonTokenStream tokensASM = new CommonTokenStream(lexerASM);
-    	SVMParser parserASM = new SVMParser(tokensASM);
-
-    	parserASM.assembly();
-
-    	// needed only for debug
-    	System.out.println("You had: "+lexerASM.lexicalErrors+" lexical errors and "+parserASM.getNumberOfSyntaxErrors()+" syntax errors.\n");
-    	if (lexerASM.lexicalErrors+parserASM.getNumberOfSyntaxErrors()>0) System.exit(1);
+    	// with -Dsvmo=true the code is also written to a .svmo file, which svm.TestASM runs
+    	// from then on without generating it again
+    	if (Boolean.getBoolean("svmo"))
+    		new ObjectFile(code.getCode(), code.getLabels(), new java.util.TreeMap<>()).write(java.nio.file.Path.of(fileName+".svmo"));
 
     	System.out.println("Running generated code via Stack Virtual Machine.");
-    	ExecuteVM vm = new ExecuteVM(parserASM.code);
-    	vm.cpu();
+    	ExecuteVM vm = new ExecuteVM(code.getCode(), mode, memsize);
+    	vm.setLabels(code.getLabels());
+    	try {
+    		vm.cpu();
+    	} catch (svm.TrapException e) {
+    		System.out.println("SVM trap: " + e.getMessage());
+    	}
+    	System.err.print(vm.inlineCacheReport());
 
     }
 }
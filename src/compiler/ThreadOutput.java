@@ -0,0 +1,70 @@
+package compiler;
+
+import java.io.*;
+
+// System.out with a destination of its own in each thread that captures it: the batch
+// compiler and the compile server handle several programs at once, and what each of them
+// prints, from the compiler phases or from the SVM running it, has to stay apart.
+final class ThreadOutput {
+
+    private static final ThreadLocal<PrintStream> target = new ThreadLocal<>();
+    private static PrintStream stdout;
+
+    // routes System.out through the threads' destinations, returning the original System.out,
+    // which threads not capturing keep printing to
+    static synchronized PrintStream install() {
+    	if (stdout == null) {
+    		stdout = System.out;
+    		System.setOut(new PrintStream(new OutputStream() {
+    			private PrintStream target() {
+    				PrintStream t = target.get();
+    				return t != null ? t : stdout;
+    			}
+    			@Override
+    			public void write(int b) { target().write(b); }
+    			@Override
+    			public void write(byte[] b, int off, int len) { target().write(b, off, len); }
+    		}, true));
+    	}
+    	return stdout;
+    }
+
+    // runs r, returning what it printed to System.out from this thread
+    static String capture(Runnable r) {
+    	return capture(r, Integer.MAX_VALUE, () -> {});
+    }
+
+    // as capture(r), keeping only the first "limit" bytes: what r prints past them is
+    // dropped, and "overflow" runs the first time it happens (r cannot be made to fail from
+    // here, as System.out is shared by all the threads)
+    static String capture(Runnable r, int limit, Runnable overflow) {
+    	ByteArrayOutputStream bytes = new ByteArrayOutputStream() {
+    		private boolean overflown;
+    		@Override
+    		public synchronized void write(int b) {
+    			if (count < limit) super.write(b);
+    			else overflow();
+    		}
+    		@Override
+    		public synchronized void write(byte[] b, int off, int len) {
+    			if (len > limit - count) {
+    				super.write(b, off, limit - count);
+    				overflow();
+    			} else super.write(b, off, len);
+    		}
+    		private void overflow() {
+    			if (!overflown) overflow.run();
+    			overflown = true;
+    		}
+    	};
+    	PrintStream outer = target.get();
+    	target.set(new PrintStream(bytes, true));
+    	try {
+    		r.run();
+    	} finally {
+    		if (outer != null) target.set(outer);
+    		else target.remove();
+    	}
+    	return bytes.toString();
+    }
+}
@@ -3,7 +3,6 @@ package compiler;
 import compiler.AST.*;
 import compiler.exc.*;
 import compiler.lib.*;
-import static compiler.TypeRels.*;
 
 //visitNode(n) fa il type checking di un Node n e ritorna:
 //- per una espressione, il suo tipo (oggetto BoolTypeNode o IntTypeNode)
@@ -13,8 +12,18 @@ import static compiler.TypeRels.*;
 //visitSTentry(s) ritorna, per una STentry s, il tipo contenuto al suo interno
 public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException> {
 
-	TypeCheckEASTVisitor() { super(true); } // enables incomplete tree exceptions
-	TypeCheckEASTVisitor(boolean debug) { super(true,debug); } // enables print for debugging
+	private final CompilationContext context; // counts the errors and holds the class hierarchy
+	private final TypeRels rels;
+
+	TypeCheckEASTVisitor() { this(new CompilationContext()); }
+	TypeCheckEASTVisitor(CompilationContext context) { super(true); this.context = context; rels = new TypeRels(context); } // enables incomplete tree exceptions
+	TypeCheckEASTVisitor(CompilationContext context, boolean debug) { super(true,debug); this.context = context; rels = new TypeRels(context); } // enables print for debugging
+
+	// a type checking error, counted in the context when raised
+	private TypeException error(String t, int line) {
+		context.typeErrors++;
+		return new TypeException(t, line);
+	}
 
 	//checks that a type object is visitable (not incomplete) 
 	private TypeNode ckvisit(TypeNode t) throws TypeException {
@@ -51,16 +60,16 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 			} catch (TypeException e) {
 				System.out.println("Type checking error in a declaration: " + e.text);
 			}
-		if ( !isSubtype(visit(n.exp),ckvisit(n.retType)) ) 
-			throw new TypeException("Wrong return type for function " + n.id,n.getLine());
+		if ( !rels.isSubtype(visit(n.exp),ckvisit(n.retType)) ) 
+			throw error("Wrong return type for function " + n.id,n.getLine());
 		return null;
 	}
 
 	@Override
 	public TypeNode visitNode(VarNode n) throws TypeException {
 		if (print) printNode(n,n.id);
-		if ( !isSubtype(visit(n.exp),ckvisit(n.getType())) )
-			throw new TypeException("Incompatible value for variable " + n.id,n.getLine());
+		if ( !rels.isSubtype(visit(n.exp),ckvisit(n.getType())) )
+			throw error("Incompatible value for variable " + n.id,n.getLine());
 		return null;
 	}
 
@@ -73,12 +82,12 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 	@Override
 	public TypeNode visitNode(IfNode n) throws TypeException {
 		if (print) printNode(n);
-		if ( !(isSubtype(visit(n.cond), new BoolTypeNode())) )
-			throw new TypeException("Non boolean condition in if",n.getLine());
+		if ( !(rels.isSubtype(visit(n.cond), new BoolTypeNode())) )
+			throw error("Non boolean condition in if",n.getLine());
 		TypeNode t = visit(n.th);
 		TypeNode e = visit(n.el);
-		if (lowestCommonAncestor(t, e) != null) return lowestCommonAncestor(t, e);
-		else throw new TypeException("Incompatible types in then-else branches", n.getLine());
+		if (rels.lowestCommonAncestor(t, e) != null) return rels.lowestCommonAncestor(t, e);
+		else throw error("Incompatible types in then-else branches", n.getLine());
 	}
 
 	@Override
@@ -86,8 +95,8 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 		if (print) printNode(n);
 		TypeNode l = visit(n.left);
 		TypeNode r = visit(n.right);
-		if ( !(isSubtype(l, r) || isSubtype(r, l)) )
-			throw new TypeException("Incompatible types in equal",n.getLine());
+		if ( !(rels.isSubtype(l, r) || rels.isSubtype(r, l)) )
+			throw error("Incompatible types in equal",n.getLine());
 		return new BoolTypeNode();
 	}
 
@@ -96,8 +105,8 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 		if (print) printNode(n);
 		TypeNode l = visit(n.left);
 		TypeNode r = visit(n.right);
-		if ( !(isSubtype(l, r) || isSubtype(r, l)) )
-			throw new TypeException("Incompatible types in greater-equal",n.getLine());
+		if ( !(rels.isSubtype(l, r) || rels.isSubtype(r, l)) )
+			throw error("Incompatible types in greater-equal",n.getLine());
 		return new BoolTypeNode();
 	}
 
@@ -106,8 +115,8 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 		if (print) printNode(n);
 		TypeNode l = visit(n.left);
 		TypeNode r = visit(n.right);
-		if ( !(isSubtype(l, r) || isSubtype(r, l)) )
-			throw new TypeException("Incompatible types in less-equal",n.getLine());
+		if ( !(rels.isSubtype(l, r) || rels.isSubtype(r, l)) )
+			throw error("Incompatible types in less-equal",n.getLine());
 		return new BoolTypeNode();
 	}
 
@@ -117,7 +126,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 		TypeNode l = visit(n.left);
 		TypeNode r = visit(n.right);
 		if ( !( l instanceof BoolTypeNode && r instanceof BoolTypeNode ) )
-			throw new TypeException("Incompatible types in and",n.getLine());
+			throw error("Incompatible types in and",n.getLine());
 		return new BoolTypeNode();
 	}
 
@@ -127,7 +136,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 		TypeNode l = visit(n.left);
 		TypeNode r = visit(n.right);
 		if ( !( l instanceof BoolTypeNode && r instanceof BoolTypeNode ) )
-			throw new TypeException("Incompatible types in or",n.getLine());
+			throw error("Incompatible types in or",n.getLine());
 		return new BoolTypeNode();
 	}
 
@@ -136,43 +145,43 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 		if (print) printNode(n);
 		TypeNode r = visit(n.right);
 		if ( !( r instanceof BoolTypeNode ) )
-			throw new TypeException("Incompatible type for not",n.getLine());
+			throw error("Incompatible type for not",n.getLine());
 		return new BoolTypeNode();
 	}
 
 	@Override
 	public TypeNode visitNode(TimesNode n) throws TypeException {
 		if (print) printNode(n);
-		if ( !(isSubtype(visit(n.left), new IntTypeNode())
-				&& isSubtype(visit(n.right), new IntTypeNode())) )
-			throw new TypeException("Non integers in multiplication",n.getLine());
+		if ( !(rels.isSubtype(visit(n.left), new IntTypeNode())
+				&& rels.isSubtype(visit(n.right), new IntTypeNode())) )
+			throw error("Non integers in multiplication",n.getLine());
 		return new IntTypeNode();
 	}
 
 	@Override
 	public TypeNode visitNode(DivNode n) throws TypeException {
 		if (print) printNode(n);
-		if ( !(isSubtype(visit(n.left), new IntTypeNode())
-				&& isSubtype(visit(n.right), new IntTypeNode())) )
-			throw new TypeException("Non integers in division", n.getLine());
+		if ( !(rels.isSubtype(visit(n.left), new IntTypeNode())
+				&& rels.isSubtype(visit(n.right), new IntTypeNode())) )
+			throw error("Non integers in division", n.getLine());
 		return new IntTypeNode();
 	}
 
 	@Override
 	public TypeNode visitNode(PlusNode n) throws TypeException {
 		if (print) printNode(n);
-		if ( !(isSubtype(visit(n.left), new IntTypeNode())
-				&& isSubtype(visit(n.right), new IntTypeNode())) )
-			throw new TypeException("Non integers in sum",n.getLine());
+		if ( !(rels.isSubtype(visit(n.left), new IntTypeNode())
+				&& rels.isSubtype(visit(n.right), new IntTypeNode())) )
+			throw error("Non integers in sum",n.getLine());
 		return new IntTypeNode();
 	}
 
 	@Override
 	public TypeNode visitNode(MinusNode n) throws TypeException {
 		if (print) printNode(n);
-		if ( !(isSubtype(visit(n.left), new IntTypeNode())
-				&& isSubtype(visit(n.right), new IntTypeNode())) )
-			throw new TypeException("Non integers in subtraction", n.getLine());
+		if ( !(rels.isSubtype(visit(n.left), new IntTypeNode())
+				&& rels.isSubtype(visit(n.right), new IntTypeNode())) )
+			throw error("Non integers in subtraction", n.getLine());
 		return new IntTypeNode();
 	}
 
@@ -181,13 +190,13 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 		if (print) printNode(n,n.id);
 		TypeNode t = visit(n.entry); 
 		if ( !(t instanceof ArrowTypeNode) )
-			throw new TypeException("Invocation of a non-function "+n.id,n.getLine());
+			throw error("Invocation of a non-function "+n.id,n.getLine());
 		ArrowTypeNode at = (ArrowTypeNode) t;
 		if ( !(at.parlist.size() == n.arglist.size()) )
-			throw new TypeException("Wrong number of parameters in the invocation of "+n.id,n.getLine());
+			throw error("Wrong number of parameters in the invocation of "+n.id,n.getLine());
 		for (int i = 0; i < n.arglist.size(); i++)
-			if ( !(isSubtype(visit(n.arglist.get(i)),at.parlist.get(i))) )
-				throw new TypeException("Wrong type for "+(i+1)+"-th parameter in the invocation of "+n.id,n.getLine());
+			if ( !(rels.isSubtype(visit(n.arglist.get(i)),at.parlist.get(i))) )
+				throw error("Wrong type for "+(i+1)+"-th parameter in the invocation of "+n.id,n.getLine());
 		return at.ret;
 	}
 
@@ -196,7 +205,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 		if (print) printNode(n,n.id);
 		TypeNode t = visit(n.entry); 
 		if (t instanceof ArrowTypeNode)
-			throw new TypeException("Wrong usage of function identifier " + n.id,n.getLine());
+			throw error("Wrong usage of function identifier " + n.id,n.getLine());
 		return t;
 	}
 
@@ -246,7 +255,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 	public TypeNode visitNode(ClassNode n) throws TypeException {
 		if (print) printNode(n, n.id);
 		if (n.superId != null) {
-			addClassTypeReference(n.id, n.superId);
+			rels.addClassTypeReference(n.id, n.superId);
 		}
 
 		for (MethodNode method : n.methods) {
@@ -260,13 +269,13 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 			// typechecking optimization
 			for (FieldNode field : n.fields) {
 				int fieldPos = -field.offset - 1;
-				if (fieldPos < superClassTypeNode.fields.size() && !isSubtype(classTypeNode.fields.get(fieldPos), superClassTypeNode.fields.get(fieldPos))) {
-					throw new TypeException("field is not subtype in line: ", n.getLine());
+				if (fieldPos < superClassTypeNode.fields.size() && !rels.isSubtype(classTypeNode.fields.get(fieldPos), superClassTypeNode.fields.get(fieldPos))) {
+					throw error("field is not subtype in line: ", n.getLine());
 				}
 			}
 			for (MethodNode method : n.methods) {
-				if (method.offset < superClassTypeNode.methods.size() && !isSubtype(classTypeNode.methods.get(method.offset), superClassTypeNode.methods.get(method.offset))) {
-					throw new TypeException("method is not subtype in line: ", n.getLine());
+				if (method.offset < superClassTypeNode.methods.size() && !rels.isSubtype(classTypeNode.methods.get(method.offset), superClassTypeNode.methods.get(method.offset))) {
+					throw error("method is not subtype in line: ", n.getLine());
 				}
 			}
 		}
@@ -283,8 +292,8 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 			} catch (TypeException e) {
 				System.out.println("Type checking error in a declaration: " + e.text);
 			}
-		if ( !isSubtype(visit(n.exp),ckvisit(n.returnType)) )
-			throw new TypeException("Wrong return type for method " + n.id, n.getLine());
+		if ( !rels.isSubtype(visit(n.exp),ckvisit(n.returnType)) )
+			throw error("Wrong return type for method " + n.id, n.getLine());
 		return null;
 	}
 
@@ -296,13 +305,13 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 
 		TypeNode t = visit(n.methodEntry);
 		if ( !(t instanceof ArrowTypeNode) )
-			throw new TypeException(n.methodId + "is not a method, line: ", n.getLine());
+			throw error(n.methodId + "is not a method, line: ", n.getLine());
 		ArrowTypeNode at = (ArrowTypeNode) t;
 		if (at.parlist.size() != n.argList.size())
-			throw new TypeException("Wrong number of parameters in the invocation of " + n.classId + "." + n.methodId, n.getLine());
+			throw error("Wrong number of parameters in the invocation of " + n.classId + "." + n.methodId, n.getLine());
 		for (int i = 0; i < n.argList.size(); i++)
-			if ( !(isSubtype(visit(n.argList.get(i)),at.parlist.get(i))) )
-				throw new TypeException("Wrong type for " + (i + 1 )+"-th parameter in the invocation of " + n.classId + "." + n.methodId, n.getLine());
+			if ( !(rels.isSubtype(visit(n.argList.get(i)),at.parlist.get(i))) )
+				throw error("Wrong type for " + (i + 1 )+"-th parameter in the invocation of " + n.classId + "." + n.methodId, n.getLine());
 		return at.ret;
 	}
 
@@ -312,8 +321,8 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 		for (int i = 0; i < n.argList.size(); i++) {
 			TypeNode fieldType = ((ClassTypeNode) n.entry.type).fields.get(i);
 			TypeNode passedField = visit(n.argList.get(i));
-			if (!isSubtype(passedField, fieldType)) {
-				throw new TypeException("Wrong field type in class " + n.classId + " at line: ", n.getLine());
+			if (!rels.isSubtype(passedField, fieldType)) {
+				throw error("Wrong field type in class " + n.classId + " at line: ", n.getLine());
 			}
 		}
 		return new RefTypeNode(n.classId);
@@ -7,10 +7,12 @@ import java.util.*;
 
 public class TypeRels {
 	// <subClass: string, superClass: string>
-	public static Map<String, String> superType = new HashMap<>();
+	private final Map<String, String> superType;
+
+	TypeRels(CompilationContext context) { superType = context.superType; }
 
 	// valuta se il tipo "a" e' <= al tipo "b", dove "a" e "b" sono tipi di base: IntTypeNode o BoolTypeNode
-	public static boolean isSubtype(TypeNode a, TypeNode b) {
+	public boolean isSubtype(TypeNode a, TypeNode b) {
 
 		if ((a instanceof RefTypeNode) && (b instanceof RefTypeNode)) {
 			String subClass = ((RefTypeNode) a ).classId;
@@ -41,12 +43,12 @@ public class TypeRels {
                 || ((a instanceof EmptyTypeNode) && (b instanceof RefTypeNode));
     }
 
-	public static void addClassTypeReference(String subClass, String superClass) {
+	public void addClassTypeReference(String subClass, String superClass) {
 		superType.put(subClass, superClass);
 	}
 
 	// for ifNode
-	public static TypeNode lowestCommonAncestor(TypeNode a, TypeNode b) {
+	public TypeNode lowestCommonAncestor(TypeNode a, TypeNode b) {
 		// bool/int Nodes management
 		if ((a instanceof BoolTypeNode) && (b instanceof IntTypeNode)
 			|| (a instanceof IntTypeNode) && (b instanceof BoolTypeNode)
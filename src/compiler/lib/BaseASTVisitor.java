@@ -83,6 +83,7 @@ public class BaseASTVisitor<S,E extends Exception> {
 	public S visitNode(FieldNode node) throws E {throw new UnimplException();}
 	public S visitNode(MethodNode n) throws E {throw new UnimplException();}
 	public S visitNode(ClassCallNode node) throws E {throw new UnimplException();}
+	public S visitNode(FieldReadNode n) throws E {throw new UnimplException();}
 	public S visitNode(NewNode n) throws E {throw new UnimplException();}
 	public S visitNode(EmptyNode n) throws E {throw new UnimplException();}
 
@@ -0,0 +1,153 @@
+package compiler.lib;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import svm.Assembler;
+
+// emits SVM code straight into an int[] ready for ExecuteVM, with no assembly text
+// in between: labels are interned to ints and resolved once the program is complete;
+// as in TextEmitter, each function body is built in a section of its own and then
+// moved, relocated, to the function code that finish() appends to the main program
+public class CodeEmitter implements Emitter {
+
+	// code with the label definitions and references in it, at addresses relative to the section
+	private static class Section {
+		int[] code = new int[256];
+		int size = 0;
+		int[] defs = new int[16]; // pairs (label id, address)
+		int defCount = 0;
+		int[] refs = new int[32]; // pairs (address, label id)
+		int refCount = 0;
+
+		void word(int w) {
+			if (size == code.length) code = Arrays.copyOf(code, size * 2);
+			code[size++] = w;
+		}
+
+		void define(int label) {
+			if (defCount + 2 > defs.length) defs = Arrays.copyOf(defs, defs.length * 2);
+			defs[defCount++] = label;
+			defs[defCount++] = size;
+		}
+
+		void reference(int label) {
+			if (refCount + 2 > refs.length) refs = Arrays.copyOf(refs, refs.length * 2);
+			refs[refCount++] = size;
+			refs[refCount++] = label;
+			word(0); // backpatched by finish()
+		}
+
+		void append(Section s) {
+			int offset = size;
+			if (size + s.size > code.length) code = Arrays.copyOf(code, Math.max(code.length * 2, size + s.size));
+			System.arraycopy(s.code, 0, code, size, s.size);
+			size += s.size;
+			for (int j = 0; j < s.defCount; j += 2) {
+				if (defCount + 2 > defs.length) defs = Arrays.copyOf(defs, defs.length * 2);
+				defs[defCount++] = s.defs[j];
+				defs[defCount++] = s.defs[j + 1] + offset;
+			}
+			for (int j = 0; j < s.refCount; j += 2) {
+				if (refCount + 2 > refs.length) refs = Arrays.copyOf(refs, refs.length * 2);
+				refs[refCount++] = s.refs[j] + offset;
+				refs[refCount++] = s.refs[j + 1];
+			}
+		}
+
+		void clear() { size = defCount = refCount = 0; }
+	}
+
+	private final Section main = new Section(), functions = new Section();
+	private final Deque<Section> open = new ArrayDeque<>(); // bodies being emitted, innermost first
+	private final Deque<Section> spare = new ArrayDeque<>(); // sections of completed bodies, reused
+	private Section current = main;
+
+	private final Map<String,Integer> labelIds = new HashMap<>();
+	private String[] labelNames = new String[64];
+
+	private int[] code;
+	private Map<String,Integer> labels;
+
+	public int[] getCode() { return code; }
+
+	public Map<String,Integer> getLabels() { return labels; }
+
+	@Override
+	public void emit(String op) { current.word(Assembler.opcode(op)); }
+
+	@Override
+	public void emit(String op, int arg) {
+		current.word(Assembler.opcode(op));
+		current.word(arg);
+	}
+
+	@Override
+	public void emit(String op, int arg1, int arg2) {
+		current.word(Assembler.opcode(op));
+		current.word(arg1);
+		current.word(arg2);
+	}
+
+	@Override
+	public void emit(String op, String label) {
+		current.word(Assembler.opcode(op));
+		current.reference(intern(label));
+	}
+
+	@Override
+	public void emit(String op, int arg, String label) {
+		current.word(Assembler.opcode(op));
+		current.word(arg);
+		current.reference(intern(label));
+	}
+
+	@Override
+	public void label(String label) { current.define(intern(label)); }
+
+	@Override
+	public void beginFunction() {
+		open.push(current);
+		current = spare.isEmpty() ? new Section() : spare.pop();
+	}
+
+	@Override
+	public void endFunction() {
+		functions.append(current);
+		current.clear();
+		spare.push(current);
+		current = open.pop();
+	}
+
+	@Override
+	public void finish() {
+		main.append(functions);
+		functions.clear();
+		int[] address = new int[labelIds.size()];
+		Arrays.fill(address, -1);
+		labels = new HashMap<>();
+		for (int j = 0; j < main.defCount; j += 2) {
+			address[main.defs[j]] = main.defs[j + 1];
+			labels.put(labelNames[main.defs[j]], main.defs[j + 1]);
+		}
+		for (int j = 0; j < main.refCount; j += 2) {
+			int target = address[main.refs[j + 1]];
+			if (target < 0) throw new IllegalStateException("undefined label " + labelNames[main.refs[j + 1]]);
+			main.code[main.refs[j]] = target;
+		}
+		code = Arrays.copyOf(main.code, main.size);
+	}
+
+	private int intern(String label) {
+		Integer id = labelIds.get(label);
+		if (id != null) return id;
+		int n = labelIds.size();
+		if (n == labelNames.length) labelNames = Arrays.copyOf(labelNames, n * 2);
+		labelNames[n] = label;
+		labelIds.put(label, n);
+		return n;
+	}
+}
@@ -0,0 +1,41 @@
+package compiler.lib;
+
+// receives the SVM instructions produced by code generation, one at a time:
+// the code of function and method bodies is emitted between beginFunction() and
+// endFunction() and ends up after the "halt" of the main program, in the order the
+// bodies are completed, while the enclosing code goes on from where it was
+public interface Emitter {
+
+	void emit(String op); // instruction without arguments
+
+	void emit(String op, int arg);
+
+	void emit(String op, int arg1, int arg2);
+
+	void emit(String op, String label); // push, b, beq, bleq of a label
+
+	void emit(String op, int arg, String label); // call of a label
+
+	void label(String label);
+
+	void beginFunction();
+
+	void endFunction();
+
+	void finish(); // once the whole program is emitted: appends the function code
+
+	// forwards everything to both emitters, e.g. to get the code and its .asm text at once
+	static Emitter both(Emitter first, Emitter second) {
+		return new Emitter() {
+			public void emit(String op) { first.emit(op); second.emit(op); }
+			public void emit(String op, int arg) { first.emit(op, arg); second.emit(op, arg); }
+			public void emit(String op, int arg1, int arg2) { first.emit(op, arg1, arg2); second.emit(op, arg1, arg2); }
+			public void emit(String op, String label) { first.emit(op, label); second.emit(op, label); }
+			public void emit(String op, int arg, String label) { first.emit(op, arg, label); second.emit(op, arg, label); }
+			public void label(String label) { first.label(label); second.label(label); }
+			public void beginFunction() { first.beginFunction(); second.beginFunction(); }
+			public void endFunction() { first.endFunction(); second.endFunction(); }
+			public void finish() { first.finish(); second.finish(); }
+		};
+	}
+}
@@ -0,0 +1,173 @@
+package compiler.lib;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static compiler.lib.FOOLlib.*;
+
+// peephole optimizer between code generation and an emitter: the last few instructions
+// of each section are held back in a window, and every time one is added the rules are
+// tried on the end of the window, again and again while one of them rewrites it.
+// Labels from freshLabel() are only jumped to forward, so once one is defined with
+// all the jumps to it in the window, no other jump to it can come later.
+public class Peephole implements Emitter {
+
+	// rules by name, in the order they are tried
+	public static final List<String> RULES = List.of(
+			"unreachable",      // b L (or js, halt); any instruction  ->  b L (or js, halt)
+			"add-zero",         // push 0; add (or sub)  ->  nothing
+			"unused-label"      // L: with no jumps to it  ->  nothing
+	);
+	private static final int WINDOW = 2; // instructions of the longest rule
+
+	// an instruction, or a label definition when op is null
+	private static final class Instr {
+		final String op, label;
+		final int args, arg1, arg2;
+		Instr(String op, String label, int args, int arg1, int arg2) {
+			this.op = op; this.label = label; this.args = args; this.arg1 = arg1; this.arg2 = arg2;
+		}
+		boolean is(String o) { return o.equals(op); }
+		boolean isPush(int v) { return "push".equals(op) && args == 1 && arg1 == v; }
+		}
+
+	private final Emitter next;
+	private final boolean[] enabled = new boolean[RULES.size()];
+	private final long[] hits = new long[RULES.size()];
+	private final Map<String,Integer> jumps = new HashMap<>(); // references to each label still in the code
+	private final Deque<List<Instr>> open = new ArrayDeque<>(); // windows of the enclosing sections
+	private List<Instr> window = new ArrayList<>();
+
+	// rules: "all", "none" or a comma-separated list of names from RULES
+	public Peephole(Emitter next, String rules) {
+		this.next = next;
+		if (rules.equals("all")) Arrays.fill(enabled, true);
+		else if (!rules.equals("none"))
+			for (String rule : rules.split(",")) {
+				int r = RULES.indexOf(rule.trim());
+				if (r < 0) throw new IllegalArgumentException("unknown peephole rule " + rule.trim() + ", expected one of " + RULES);
+				enabled[r] = true;
+			}
+	}
+
+	public long hits(String rule) { return hits[RULES.indexOf(rule)]; }
+
+	public String report() {
+		StringBuilder report = new StringBuilder();
+		for (int r = 0; r < RULES.size(); r++)
+			if (enabled[r]) report.append(RULES.get(r)).append(": ").append(hits[r]).append('\n');
+		return report.toString();
+	}
+
+	@Override
+	public void emit(String op) { add(new Instr(op, null, 0, 0, 0)); }
+
+	@Override
+	public void emit(String op, int arg) { add(new Instr(op, null, 1, arg, 0)); }
+
+	@Override
+	public void emit(String op, int arg1, int arg2) { add(new Instr(op, null, 2, arg1, arg2)); }
+
+	@Override
+	public void emit(String op, String label) {
+		jumps.merge(label, 1, Integer::sum);
+		add(new Instr(op, label, 0, 0, 0));
+	}
+
+	@Override
+	public void emit(String op, int arg, String label) {
+		jumps.merge(label, 1, Integer::sum);
+		add(new Instr(op, label, 1, arg, 0));
+	}
+
+	@Override
+	public void label(String label) { add(new Instr(null, label, 0, 0, 0)); }
+
+	@Override
+	public void beginFunction() {
+		open.push(window);
+		window = new ArrayList<>();
+		next.beginFunction();
+	}
+
+	@Override
+	public void endFunction() {
+		flush(0);
+		window = open.pop();
+		next.endFunction();
+	}
+
+	@Override
+	public void finish() {
+		flush(0);
+		next.finish();
+	}
+
+	private void add(Instr i) {
+		window.add(i);
+		while (rewrite());
+		if (window.size() > WINDOW) flush(WINDOW);
+	}
+
+	// passes the instructions on until only "keep" are left in the window
+	private void flush(int keep) {
+		int n = window.size() - keep;
+		for (Instr i : window.subList(0, n)) {
+			if (i.op == null) next.label(i.label);
+			else if (i.label != null && i.args == 1) next.emit(i.op, i.arg1, i.label);
+			else if (i.label != null) next.emit(i.op, i.label);
+			else if (i.args == 0) next.emit(i.op);
+			else if (i.args == 1) next.emit(i.op, i.arg1);
+			else next.emit(i.op, i.arg1, i.arg2);
+		}
+		window.subList(0, n).clear();
+	}
+
+	private Instr last(int k) { // k-th instruction from the end of the window, 1 is the last one
+		return window.size() >= k ? window.get(window.size() - k) : null;
+	}
+
+	private void remove(int k) { // the last k instructions, dropping their references
+		for (int j = 0; j < k; j++) {
+			Instr i = window.remove(window.size() - 1);
+			if (i.op != null && i.label != null) jumps.merge(i.label, -1, Integer::sum);
+		}
+	}
+
+	private boolean unused(String label) {
+		return isFreshLabel(label) && jumps.getOrDefault(label, 0) == 0;
+	}
+
+	private boolean rewrite() {
+		for (int r = 0; r < RULES.size(); r++)
+			if (enabled[r] && apply(r)) {
+				hits[r]++;
+				return true;
+			}
+		return false;
+	}
+
+	private boolean apply(int rule) {
+		Instr i1 = last(1), i2 = last(2);
+		if (i1 == null) return false;
+		switch (rule) {
+			case 0: // unreachable: nothing jumps past b, js or halt, and labels are kept
+				if (i2 == null || i1.op == null || !(i2.is("b") || i2.is("js") || i2.is("halt"))) return false;
+				remove(1);
+				return true;
+			case 1: // add-zero
+				if (i2 == null || !(i1.is("add") || i1.is("sub")) || !i2.isPush(0)) return false;
+				remove(2);
+				return true;
+			default: // unused-label
+				if (i1.op != null || !unused(i1.label)) return false;
+				remove(1);
+				return true;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package compiler.lib;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// emits SVM assembly text, one instruction per line: the main program is written
+// straight to "out" (a Writer or a StringBuilder), each function body is collected
+// in a buffer of its own until it is complete and then moved to the function code,
+// so every instruction is copied at most twice whatever the nesting of functions
+public class TextEmitter implements Emitter {
+
+	private final Appendable out;
+	private final StringBuilder functions = new StringBuilder();
+	private final Deque<StringBuilder> open = new ArrayDeque<>(); // bodies being emitted, innermost first
+	private final Deque<StringBuilder> spare = new ArrayDeque<>(); // buffers of completed bodies, reused
+
+	public TextEmitter(Appendable out) { this.out = out; }
+
+	@Override
+	public void emit(String op) { line(op); }
+
+	@Override
+	public void emit(String op, int arg) { line(op + " " + arg); }
+
+	@Override
+	public void emit(String op, int arg1, int arg2) { line(op + " " + arg1 + " " + arg2); }
+
+	@Override
+	public void emit(String op, String label) { line(op + " " + label); }
+
+	@Override
+	public void emit(String op, int arg, String label) { line(op + " " + arg + " " + label); }
+
+	@Override
+	public void label(String label) { line(label + ":"); }
+
+	@Override
+	public void beginFunction() {
+		StringBuilder body = spare.isEmpty() ? new StringBuilder() : spare.pop();
+		body.append('\n'); // empty line before the code of each function
+		open.push(body);
+	}
+
+	@Override
+	public void endFunction() {
+		StringBuilder body = open.pop();
+		functions.append(body);
+		body.setLength(0);
+		spare.push(body);
+	}
+
+	@Override
+	public void finish() {
+		try {
+			out.append(functions);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		functions.setLength(0);
+	}
+
+	private void line(String s) {
+		try {
+			(open.isEmpty() ? out : open.peek()).append(s).append('\n');
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,331 @@
+package svm;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Single-pass assembler for the syntax of SVM.g4, without ANTLR: characters are read
+// in blocks and tokenized by hand, labels are interned to ints as they are met, and
+// references to labels not yet defined are backpatched at the end from an int array.
+// Opcodes are the SVMLexer token types, so the output is the same code[] SVMParser builds.
+// Errors are counted, as in SVMLexer and SVMParser, and reported on the same streams.
+public class Assembler {
+
+    // operand shapes, as in the alternatives of the "instruction" rule of SVM.g4
+    private static final int NONE = 0, INTEGER = 1, LABEL = 2, INTEGER_OR_LABEL = 3, TWO_INTEGERS = 4, INTEGER_AND_LABEL = 5;
+
+    private static final Map<String,Integer> MNEMONICS = new HashMap<>();
+    private static final int[] SHAPE = new int[SVMLexer.VOCABULARY.getMaxTokenType() + 1];
+    static {
+      for (int t = 1; t <= SVMLexer.VOCABULARY.getMaxTokenType(); t++) {
+        String literal = SVMLexer.VOCABULARY.getLiteralName(t);
+        if (literal != null && Character.isLetter(literal.charAt(1))) MNEMONICS.put(literal.substring(1, literal.length() - 1), t);
+      }
+      SHAPE[SVMParser.PUSH] = INTEGER_OR_LABEL;
+      SHAPE[SVMParser.BRANCH] = SHAPE[SVMParser.BRANCHEQ] = SHAPE[SVMParser.BRANCHLESSEQ] = LABEL;
+      SHAPE[SVMParser.BRANCHTRUE] = SHAPE[SVMParser.BRANCHFALSE] = SHAPE[SVMParser.JUMPANDLINK] = LABEL;
+      SHAPE[SVMParser.LOADLOCAL] = SHAPE[SVMParser.CALLMETHOD] = INTEGER;
+      SHAPE[SVMParser.ENTER] = SHAPE[SVMParser.LEAVE] = SHAPE[SVMParser.PUSHDISPLAY] = INTEGER;
+      SHAPE[SVMParser.LOADOUTER] = SHAPE[SVMParser.CALLFRAME] = SHAPE[SVMParser.NEW] = TWO_INTEGERS;
+      SHAPE[SVMParser.LOADDISPLAY] = TWO_INTEGERS;
+      SHAPE[SVMParser.CALL] = INTEGER_AND_LABEL;
+    }
+
+    // tokens
+    private static final int T_EOF = -1, T_MNEMONIC = 0, T_LABEL = 1, T_INTEGER = 2, T_COL = 3;
+
+    public int[] code = new int[1024];
+    public int lexicalErrors = 0;
+    public int syntaxErrors = 0;
+    private int i = 0;
+    private int[] lineOf = new int[1024]; // .asm line of each instruction start, 0 for operand words
+
+    private final Map<String,Integer> labelIds = new HashMap<>();
+    private String[] labelNames = new String[64];
+    private int[] labelAddress = new int[64]; // -1 while undefined
+    private int[] refs = new int[256];        // pairs (code position, label id) to backpatch
+    private int refCount = 0;
+
+    private final Reader in;
+    private char[] buffer = new char[1 << 16];
+    private int pos = 0, limit = 0, line = 1;
+    private boolean unterminated = false; // a "/*" without "*/" was met: none can follow it
+
+    // current token
+    private int token, tokenLine, value;
+    private String text;
+
+    // opcode of an instruction mnemonic, as in SVM.g4
+    public static int opcode(String mnemonic) {
+      Integer opcode = MNEMONICS.get(mnemonic);
+      if (opcode == null) throw new IllegalArgumentException("unknown instruction " + mnemonic);
+      return opcode;
+    }
+
+    public Assembler(Reader in) {
+      this.in = in;
+    }
+
+    public void assembly() throws IOException {
+      next();
+      while (token != T_EOF) instruction();
+      for (int r = 0; r < refCount; r += 2) {
+        int address = labelAddress[refs[r + 1]];
+        if (address < 0) {
+          System.err.println("undefined label " + labelNames[refs[r + 1]]);
+          syntaxErrors++;
+        } else code[refs[r]] = address;
+      }
+      code = Arrays.copyOf(code, i);
+    }
+
+    public Map<String,Integer> getLabels() {
+      Map<String,Integer> labels = new HashMap<>();
+      for (Map.Entry<String,Integer> l : labelIds.entrySet())
+        if (labelAddress[l.getValue()] >= 0) labels.put(l.getKey(), labelAddress[l.getValue()]);
+      return labels;
+    }
+
+    public Map<Integer,Integer> getLines() {
+      Map<Integer,Integer> lines = new TreeMap<>();
+      for (int a = 0; a < i; a++) if (lineOf[a] != 0) lines.put(a, lineOf[a]);
+      return lines;
+    }
+
+    private void instruction() throws IOException {
+      if (token == T_LABEL) { // label definition
+        String name = text;
+        int l = tokenLine;
+        next();
+        if (token != T_COL) {
+          error(l, "missing ':' after label " + name);
+          return;
+        }
+        int id = intern(name); // before indexing: interning may grow labelAddress
+        labelAddress[id] = i;
+        next();
+        return;
+      }
+      if (token != T_MNEMONIC) {
+        error(tokenLine, "unexpected " + describe());
+        next();
+        return;
+      }
+      int opcode = value;
+      int l = tokenLine;
+      next();
+      if (i + 3 > code.length) {
+        code = Arrays.copyOf(code, code.length * 2);
+        lineOf = Arrays.copyOf(lineOf, code.length);
+      }
+      lineOf[i] = l;
+      int start = i;
+      code[i++] = opcode;
+      switch ( SHAPE[opcode] ) {
+        case INTEGER_OR_LABEL :
+          if (token == T_LABEL) {
+            reference(text);
+            next();
+            return;
+          }
+          operand(start);
+          return;
+        case LABEL :
+          if (token != T_LABEL) {
+            i = start;
+            error(l, "missing label after " + SVMLexer.VOCABULARY.getLiteralName(opcode));
+            return;
+          }
+          reference(text);
+          next();
+          return;
+        case INTEGER :
+          operand(start);
+          return;
+        case TWO_INTEGERS :
+          if (operand(start)) operand(start);
+          return;
+        case INTEGER_AND_LABEL :
+          if (!operand(start)) return;
+          if (token != T_LABEL) {
+            i = start;
+            error(l, "missing label after " + SVMLexer.VOCABULARY.getLiteralName(opcode));
+            return;
+          }
+          reference(text);
+          next();
+          return;
+      }
+    }
+
+    private boolean operand(int start) throws IOException {
+      if (token != T_INTEGER) {
+        error(lineOf[start], "missing integer after " + SVMLexer.VOCABULARY.getLiteralName(code[start]));
+        i = start;
+        return false;
+      }
+      code[i++] = value;
+      next();
+      return true;
+    }
+
+    private void reference(String name) {
+      if (refCount + 2 > refs.length) refs = Arrays.copyOf(refs, refs.length * 2);
+      refs[refCount++] = i++;
+      refs[refCount++] = intern(name);
+    }
+
+    private int intern(String name) {
+      Integer id = labelIds.get(name);
+      if (id != null) return id;
+      int n = labelIds.size();
+      if (n == labelNames.length) {
+        labelNames = Arrays.copyOf(labelNames, n * 2);
+        labelAddress = Arrays.copyOf(labelAddress, n * 2);
+      }
+      labelNames[n] = name;
+      labelAddress[n] = -1;
+      labelIds.put(name, n);
+      return n;
+    }
+
+    private void error(int l, String message) {
+      System.err.println("line " + l + ": " + message);
+      syntaxErrors++;
+    }
+
+    private String describe() {
+      return token == T_INTEGER ? "integer " + value : token == T_COL ? "':'" : "'" + text + "'";
+    }
+
+    // tokenizer, with the longest-match rules of SVMLexer
+
+    private int peek() throws IOException {
+      if (pos == limit) {
+        limit = in.read(buffer, 0, buffer.length);
+        pos = 0;
+        if (limit <= 0) {
+          limit = 0;
+          return -1;
+        }
+      }
+      return buffer[pos];
+    }
+
+    private static boolean isLetter(int c) {
+      return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(int c) {
+      return c >= '0' && c <= '9';
+    }
+
+    private void next() throws IOException {
+      while (true) {
+        int c = peek();
+        if (c == -1) {
+          token = T_EOF;
+          tokenLine = line;
+          return;
+        }
+        if (c == ' ' || c == '\t' || c == '\r' || c == '\n') {
+          if (c == '\n') line++;
+          pos++;
+          continue;
+        }
+        if (c == '/' && comment()) continue;
+        tokenLine = line;
+        if (isLetter(c)) {
+          StringBuilder s = new StringBuilder();
+          while (isLetter(c) || isDigit(c)) {
+            s.append((char) c);
+            pos++;
+            c = peek();
+          }
+          text = s.toString();
+          Integer opcode = MNEMONICS.get(text);
+          if (opcode != null) {
+            token = T_MNEMONIC;
+            value = opcode;
+          } else token = T_LABEL;
+          return;
+        }
+        if (c == ':') {
+          pos++;
+          token = T_COL;
+          return;
+        }
+        if (c == '0') {
+          pos++;
+          token = T_INTEGER;
+          value = 0;
+          return;
+        }
+        if (isDigit(c) || (c == '-' && nextIsNonZeroDigit())) {
+          boolean negative = c == '-';
+          if (negative) pos++;
+          long v = 0;
+          while (isDigit(c = peek())) {
+            v = v * 10 + (c - '0');
+            if (v > (long) Integer.MAX_VALUE + 1) v = (long) Integer.MAX_VALUE + 2; // saturates, reported below
+            pos++;
+          }
+          if (negative) v = -v;
+          token = T_INTEGER;
+          if (v < Integer.MIN_VALUE || v > Integer.MAX_VALUE) {
+            error(tokenLine, "integer out of range");
+            v = 0;
+          }
+          value = (int) v;
+          return;
+        }
+        pos++;
+        System.out.println("Invalid char: " + (char) c + " at line " + line);
+        lexicalErrors++;
+      }
+    }
+
+    // '-' is at pos: whether a digit 1-9 follows it
+    private boolean nextIsNonZeroDigit() throws IOException {
+      if (pos + 1 == limit) { // keep the '-' in the buffer while refilling
+        buffer[0] = '-';
+        int n = in.read(buffer, 1, buffer.length - 1);
+        pos = 0;
+        limit = n <= 0 ? 1 : n + 1;
+      }
+      return pos + 1 < limit && buffer[pos + 1] >= '1' && buffer[pos + 1] <= '9';
+    }
+
+    // '/' is at pos: skips a /* */ comment, if one starts here; an unterminated one is not
+    // a comment, so the input is read again from its '/', all of it now in the buffer
+    private boolean comment() throws IOException {
+      if (unterminated) return false;
+      if (pos + 1 == limit) {
+        buffer[0] = '/';
+        int n = in.read(buffer, 1, buffer.length - 1);
+        pos = 0;
+        limit = n <= 0 ? 1 : n + 1;
+      }
+      if (pos + 1 >= limit || buffer[pos + 1] != '*') return false;
+      pos += 2;
+      StringBuilder read = new StringBuilder("/*");
+      int first = line;
+      int previous = 0;
+      for (int c; (c = peek()) != -1; previous = c) {
+        pos++;
+        if (c == '\n') line++;
+        if (previous == '*' && c == '/') return true;
+        read.append((char) c);
+      }
+      unterminated = true;
+      buffer = read.toString().toCharArray();
+      pos = 0;
+      limit = buffer.length;
+      line = first;
+      return false; // SVMLexer reports the '/' and the '*' as invalid chars, and goes on after them
+    }
+
+}
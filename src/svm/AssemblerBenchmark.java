@@ -0,0 +1,84 @@
+package svm;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.antlr.v4.runtime.*;
+
+// Compares the ANTLR SVMLexer/SVMParser with Assembler on the same source, checking
+// that both produce the same code and labels. With no .asm file given, it assembles a
+// synthetic program: "size" functions of random straight-line code, calls and loops.
+//   java svm.AssemblerBenchmark [file.asm | size] [rounds]
+public class AssemblerBenchmark {
+    public static void main(String[] args) throws Exception {
+
+        String source = args.length > 0 && args[0].endsWith(".asm") ? Files.readString(Path.of(args[0]))
+            : synthetic(args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        System.out.println("Source: " + source.length() / 1024 + " KB, " + source.lines().count() + " lines.");
+
+        SVMParser reference = antlr(source);
+        Assembler assembler = handWritten(source);
+        if (!Arrays.equals(reference.code, assembler.code) || !reference.getLabels().equals(assembler.getLabels())
+            || !reference.getLines().equals(assembler.getLines())) {
+            System.out.println("Assembler and SVMParser disagree.");
+            System.exit(1);
+        }
+        System.out.println("Code: " + assembler.code.length + " words, " + assembler.getLabels().size() + " labels, identical.");
+
+        long antlrBest = Long.MAX_VALUE, assemblerBest = Long.MAX_VALUE;
+        for (int r = 0; r < rounds; r++) {
+            long t = System.nanoTime();
+            antlr(source);
+            antlrBest = Math.min(antlrBest, System.nanoTime() - t);
+            t = System.nanoTime();
+            handWritten(source);
+            assemblerBest = Math.min(assemblerBest, System.nanoTime() - t);
+        }
+        report("SVMParser", antlrBest, source.length());
+        report("Assembler", assemblerBest, source.length());
+        System.out.printf("Speedup: %.1fx%n", (double) antlrBest / assemblerBest);
+    }
+
+    private static SVMParser antlr(String source) {
+        SVMLexer lexer = new SVMLexer(CharStreams.fromString(source));
+        SVMParser parser = new SVMParser(new CommonTokenStream(lexer));
+        parser.twoStageAssembly();
+        return parser;
+    }
+
+    private static Assembler handWritten(String source) throws Exception {
+        Assembler assembler = new Assembler(new StringReader(source));
+        assembler.assembly();
+        return assembler;
+    }
+
+    private static void report(String name, long nanos, int chars) {
+        System.out.printf("%s: %.1f ms, %.1f MB/s%n", name, nanos / 1e6, chars / (nanos / 1e3));
+    }
+
+    // shaped like the output of CodeGenerationASTVisitor, forward and backward references included
+    private static String synthetic(int functions) {
+        Random random = new Random(42);
+        String[] plain = {"add", "sub", "mult", "div", "lw", "sw", "pop", "lra", "sra", "ltm", "stm", "lfp", "lhp", "shp", "cfp", "print", "dup", "lgfp"};
+        StringBuilder s = new StringBuilder();
+        s.append("push 0\nlhp\npush function0\njs\nhalt\n");
+        for (int f = 0; f < functions; f++) {
+            s.append("/* function ").append(f).append(" */\nfunction").append(f).append(":\ncfp\nlra\n");
+            for (int k = random.nextInt(30); k > 0; k--) {
+                switch (random.nextInt(6)) {
+                  case 0 -> s.append("push ").append(random.nextInt(2001) - 1000).append('\n');
+                  case 1 -> s.append("lloc ").append(random.nextInt(8)).append('\n');
+                  case 2 -> s.append("lout ").append(random.nextInt(4)).append(' ').append(random.nextInt(8)).append('\n');
+                  case 3 -> s.append("push function").append(random.nextInt(functions)).append("\njs\n");
+                  case 4 -> s.append("beq label").append(f).append("x\n");
+                  default -> s.append(plain[random.nextInt(plain.length)]).append('\n');
+                }
+            }
+            s.append("label").append(f).append("x:\nb label").append(f).append("y\nlabel").append(f).append("y:\nstm\nsra\npop\nsfp\nltm\nlra\njs\n");
+        }
+        return s.toString();
+    }
+}
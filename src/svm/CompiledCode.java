@@ -0,0 +1,608 @@
+package svm;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Translation of assembled code into JVM bytecode, loaded as a hidden class with one
+// static int runK(ExecuteVM vm) per chunk of the code: consecutive instructions, as many
+// as fit in a method HotSpot still compiles.
+// The registers sp, fp, hp, ra and tm live in locals of the method (hp is written back
+// at every change, as the collector reads it) and memory goes through ExecuteVM.load
+// and the helpers below. Every instruction start gets a JVM label, so branches and
+// calls of a label in the same chunk are plain jumps; jumps to addresses computed at run
+// time (js, callf, callm) go through a lookupswitch over the return addresses and over
+// the "push" operands that are instruction starts, i.e. every code address the program
+// can produce, and over the entry points of the chunk, reached from the others.
+// Control going to another chunk leaves the method with the registers written back, and
+// run() enters the chunk of vm.ip; a jump anywhere else leaves it for the interpreter,
+// which goes on from there: run returns true only when halt is reached.
+// The class file is version 49, so no stack map frames are needed.
+final class CompiledCode {
+
+    static final int MAX_METHOD_SIZE = 8000; // HotSpot does not compile larger methods (HugeMethodLimit)
+
+    // what the method of a chunk returns
+    private static final int BAILED = 0, HALTED = 1, LEFT = 2;
+
+    private static final String VM = "svm/ExecuteVM";
+
+    // locals of the generated methods, after the vm in local 0
+    private static final int SP = 1, FP = 2, HP = 3, RA = 4, TM = 5, IP = 6, T1 = 7, T2 = 8;
+    private static final int[] REGISTERS = {SP, FP, HP, RA, TM, IP};
+    private static final String[] REGISTER_FIELDS = {"sp", "fp", "hp", "ra", "tm", "ip"};
+
+    // JVM opcodes used
+    private static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC = 0x12, LDC_W = 0x13,
+        ILOAD = 0x15, ILOAD_0 = 0x1a, ALOAD_0 = 0x2a, ISTORE = 0x36, ISTORE_0 = 0x3b, IADD = 0x60, ISUB = 0x64, IMUL = 0x68, IDIV = 0x6c,
+        IINC = 0x84, IFEQ = 0x99, IFNE = 0x9a, IF_ICMPEQ = 0x9f, IF_ICMPLT = 0xa1, IF_ICMPGE = 0xa2, IF_ICMPLE = 0xa4, GOTO = 0xa7,
+        LOOKUPSWITCH = 0xab, IRETURN = 0xac, GETFIELD = 0xb4, PUTFIELD = 0xb5, INVOKEVIRTUAL = 0xb6;
+
+    private final int[] chunks;          // first code address of each chunk
+    private final MethodHandle[] methods; // and its method
+
+    private CompiledCode(int[] chunks, MethodHandle[] methods) {
+      this.chunks = chunks;
+      this.methods = methods;
+    }
+
+    // null if there is no code; "polling" has the code poll the deadline of the vm (see
+    // ExecuteVM.setDeadline) at each computed jump and backward jump
+    static CompiledCode compile(int[] code, boolean polling) {
+      if (code.length == 0) return null;
+      Translator translator = new Translator(code, polling);
+      byte[] classFile = translator.classFile();
+      int[] chunks = translator.chunks.stream().mapToInt(Integer::intValue).toArray();
+      try {
+        MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(classFile, true);
+        MethodHandle[] methods = new MethodHandle[chunks.length];
+        for (int k = 0; k < chunks.length; k++)
+          methods[k] = lookup.findStatic(lookup.lookupClass(), "run" + k, MethodType.methodType(int.class, ExecuteVM.class));
+        return new CompiledCode(chunks, methods);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("generated class rejected", e);
+      }
+    }
+
+    boolean run(ExecuteVM vm) {
+      try {
+        while (true) {
+          int k = Arrays.binarySearch(chunks, vm.ip);
+          if (k < 0) k = -k - 2; // the chunk starting before ip
+          if (k < 0 || vm.ip >= vm.code.length) return false;
+          int result = (int) methods[k].invokeExact(vm);
+          if (result != LEFT) return result == HALTED;
+        }
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    private static class Translator {
+
+      private final int[] code;
+      private final boolean polling;
+      private final boolean[] start;   // instruction starts of code[]
+      private final TreeSet<Integer> computed = new TreeSet<>(); // addresses jumps computed at run time can reach
+      private final TreeSet<Integer> jumped = new TreeSet<>();   // addresses of branches and calls of a label
+      private final List<Integer> chunks = new ArrayList<>();    // first address of each chunk
+
+      // the method being generated, for code[from] to code[to - 1]
+      private int from, to;
+      private final int[] labelPc;    // bytecode offset of each code address, then of dispatch, exit, bail and leave
+      private final int dispatch, exit, bail, leave;
+      private final List<Integer> stubs = new ArrayList<>();  // jump targets out of the chunk or not instruction starts
+      private final List<Integer> stubPc = new ArrayList<>(); // (labels -1, -2, ...) and their stub offsets
+      private ByteArrayOutputStream out = new ByteArrayOutputStream();
+      private final List<int[]> fixups = new ArrayList<>(); // {position of offset, base, label, size}
+
+      private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+      private final Map<String,Integer> entries = new HashMap<>();
+      private int poolCount = 1;
+
+      Translator(int[] code, boolean polling) {
+        this.code = code;
+        this.polling = polling;
+        start = new boolean[code.length];
+        for (int i = 0; i < code.length; i += 1 + ThreadedCode.operands(code[i])) start[i] = true;
+        dispatch = code.length;
+        exit = code.length + 1;
+        bail = code.length + 2;
+        leave = code.length + 3;
+        labelPc = new int[code.length + 4];
+
+        computed.add(0);
+        for (int i = 0; i < code.length; i += 1 + ThreadedCode.operands(code[i])) {
+          int next = i + 1 + ThreadedCode.operands(code[i]);
+          int a = ThreadedCode.fetch(code, i + 1), b = ThreadedCode.fetch(code, i + 2);
+          switch ( code[i] ) {
+            case SVMParser.JS : case SVMParser.CALLFRAME : case SVMParser.CALLMETHOD :
+              if (next < code.length) computed.add(next);
+              break;
+            case SVMParser.CALL :
+              if (next < code.length) computed.add(next);
+              jumped.add(b);
+              break;
+            case SVMParser.JUMPANDLINK :
+              if (next < code.length) computed.add(next);
+              jumped.add(a);
+              break;
+            case SVMParser.BRANCH : case SVMParser.BRANCHEQ : case SVMParser.BRANCHLESSEQ :
+            case SVMParser.BRANCHTRUE : case SVMParser.BRANCHFALSE :
+              jumped.add(a);
+              break;
+            case SVMParser.PUSH :
+              if (a >= 0 && a < code.length && start[a]) computed.add(a);
+              break;
+          }
+        }
+        split();
+      }
+
+      // chunks as long as they can be: the bytecode of each instruction is the same in any
+      // chunk, plus at most a case of the dispatch for it and a stub for its jump
+      private void split() {
+        int[] size = new int[code.length];
+        from = 0;
+        to = code.length;
+        for (int i = 0; i < code.length; i += 1 + ThreadedCode.operands(code[i])) {
+          int before = out.size();
+          translate(code[i], i, i + 1 + ThreadedCode.operands(code[i]));
+          size[i] = out.size() - before + stubCost(code[i]);
+        }
+        out = new ByteArrayOutputStream();
+        fixups.clear();
+        stubs.clear();
+
+        final int overhead = 256; // entry, dispatch, exits and padding
+        int bytes = MAX_METHOD_SIZE;
+        for (int i = 0; i < code.length; i += 1 + ThreadedCode.operands(code[i])) {
+          int cost = size[i] + (computed.contains(i) || jumped.contains(i) ? 8 : 0);
+          if (bytes + cost > MAX_METHOD_SIZE - overhead) {
+            chunks.add(i);
+            bytes = 8; // its entry point
+          }
+          bytes += cost;
+        }
+      }
+
+      // room for the stub of a jump of code[i] to a label of another chunk
+      private static int stubCost(int opcode) {
+        switch ( opcode ) {
+          case SVMParser.BRANCH : case SVMParser.BRANCHEQ : case SVMParser.BRANCHLESSEQ :
+          case SVMParser.BRANCHTRUE : case SVMParser.BRANCHFALSE : case SVMParser.CALL : case SVMParser.JUMPANDLINK :
+            return 10;
+          default :
+            return 0;
+        }
+      }
+
+      byte[] classFile() {
+        List<byte[]> bodies = new ArrayList<>();
+        for (int k = 0; k < chunks.size(); k++)
+          bodies.add(method(chunks.get(k), k + 1 < chunks.size() ? chunks.get(k + 1) : code.length));
+        int thisClass = classRef("svm/JitCode"), superClass = classRef("java/lang/Object");
+        int descriptor = utf8("(L" + VM + ";)I"), codeAttr = utf8("Code");
+        int[] names = new int[bodies.size()];
+        for (int k = 0; k < names.length; k++) names[k] = utf8("run" + k);
+        ByteArrayOutputStream f = new ByteArrayOutputStream();
+        u4(f, 0xCAFEBABE);
+        u2(f, 0);
+        u2(f, 49);
+        u2(f, poolCount);
+        f.writeBytes(pool.toByteArray());
+        u2(f, 0x0030); // final, super
+        u2(f, thisClass);
+        u2(f, superClass);
+        u2(f, 0); // interfaces
+        u2(f, 0); // fields
+        u2(f, bodies.size()); // methods
+        for (int k = 0; k < names.length; k++) {
+          byte[] body = bodies.get(k);
+          u2(f, 0x0008); // static
+          u2(f, names[k]);
+          u2(f, descriptor);
+          u2(f, 1);
+          u2(f, codeAttr);
+          u4(f, 12 + body.length);
+          u2(f, 8); // max stack
+          u2(f, T2 + 1); // max locals
+          u4(f, body.length);
+          f.writeBytes(body);
+          u2(f, 0); // exception table
+          u2(f, 0); // attributes of Code
+        }
+        u2(f, 0); // attributes of the class
+        return f.toByteArray();
+      }
+
+      private byte[] method(int from, int to) {
+        this.from = from;
+        this.to = to;
+        out = new ByteArrayOutputStream();
+        fixups.clear();
+        stubs.clear();
+        stubPc.clear();
+        // entered at its start, at the addresses computed jumps reach and at the targets of
+        // jumps from the other chunks
+        TreeSet<Integer> targets = new TreeSet<>(computed.subSet(from, to));
+        targets.add(from);
+        for (int t : jumped.subSet(from, to)) if (start[t]) targets.add(t);
+
+        // entry: registers from the vm, then on to vm.ip
+        for (int j = 0; j < REGISTERS.length; j++) {
+          op(ALOAD_0); getfield(REGISTER_FIELDS[j]); istore(REGISTERS[j]);
+        }
+        // the dispatch comes first, so that calls and returns jump backwards: HotSpot
+        // only counts backward branches (not switches) to decide to compile a running method
+        labelPc[dispatch] = out.size();
+        if (polling) { op(ALOAD_0); invoke("poll", "()V"); }
+        iload(IP);
+        int at = out.size();
+        op(LOOKUPSWITCH);
+        while (out.size() % 4 != 0) op(0);
+        fixup(at, exit, 4);
+        u4(out, targets.size());
+        for (int t : targets) {
+          u4(out, t);
+          fixup(at, t, 4);
+        }
+
+        for (int i = from; i < to; i += 1 + ThreadedCode.operands(code[i])) {
+          labelPc[i] = out.size();
+          translate(code[i], i, i + 1 + ThreadedCode.operands(code[i]));
+        }
+        // falling off the end of the chunk: on in the next one, or, at the end of code[],
+        // in the interpreter, which fails there as it would have
+        iconst(to);
+        istore(IP);
+        jump(GOTO, exit);
+
+        for (int j = 0; j < stubs.size(); j++) {
+          stubPc.add(out.size());
+          iconst(stubs.get(j));
+          istore(IP);
+          jump(GOTO, exit);
+        }
+
+        // ip out of the chunk: on in another one; in the chunk, where it cannot be entered:
+        // on in the interpreter
+        labelPc[exit] = out.size();
+        iload(IP); iconst(from); jump(IF_ICMPLT, leave);
+        iload(IP); iconst(to); jump(IF_ICMPGE, leave);
+
+        labelPc[bail] = out.size();
+        writeBack();
+        iconst(BAILED);
+        op(IRETURN);
+
+        labelPc[leave] = out.size();
+        writeBack();
+        iconst(LEFT);
+        op(IRETURN);
+
+        if (out.size() > MAX_METHOD_SIZE) throw new IllegalStateException("chunk of " + out.size() + " bytes");
+        byte[] body = out.toByteArray();
+        for (int[] f : fixups) {
+          int offset = target(f[2]) - f[1];
+          if (f[3] == 2) {
+            body[f[0]] = (byte) (offset >> 8);
+            body[f[0] + 1] = (byte) offset;
+          } else for (int k = 0; k < 4; k++) body[f[0] + k] = (byte) (offset >> (24 - 8 * k));
+        }
+        return body;
+      }
+
+      private int target(int label) {
+        return label < 0 ? stubPc.get(-label - 1) : labelPc[label];
+      }
+
+      private void translate(int opcode, int i, int next) {
+        int a = ThreadedCode.fetch(code, i + 1), b = ThreadedCode.fetch(code, i + 2);
+        switch ( opcode ) {
+          case SVMParser.PUSH :
+            pushWith(() -> iconst(a));
+            break;
+          case SVMParser.POP :
+            op(IINC); op(SP); op(1);
+            break;
+          case SVMParser.ADD : binary(IADD); break;
+          case SVMParser.SUB : binary(ISUB); break;
+          case SVMParser.MULT : binary(IMUL); break;
+          case SVMParser.DIV : binary(IDIV); break;
+          case SVMParser.STOREW :
+            popInto(T1);
+            popInto(T2);
+            op(ALOAD_0); iload(SP); iload(T1); iload(T2);
+            invoke("storeAt", "(III)V");
+            break;
+          case SVMParser.LOADW : // replaces the address on top with the word it points to
+            op(ALOAD_0); iload(SP);
+            op(ALOAD_0); op(ALOAD_0); iload(SP); invoke("load", "(I)I"); invoke("load", "(I)I");
+            invoke("setStack", "(II)V");
+            break;
+          case SVMParser.BRANCH :
+            jump(GOTO, label(i, a));
+            break;
+          case SVMParser.BRANCHEQ :
+          case SVMParser.BRANCHLESSEQ :
+            popInto(T1);
+            popInto(T2);
+            iload(T2); iload(T1);
+            jump(opcode == SVMParser.BRANCHEQ ? IF_ICMPEQ : IF_ICMPLE, label(i, a));
+            break;
+          case SVMParser.JS :
+            popInto(IP);
+            iconst(next); istore(RA);
+            jump(GOTO, dispatch);
+            break;
+          case SVMParser.STORERA : popInto(RA); break;
+          case SVMParser.LOADRA : pushWith(() -> iload(RA)); break;
+          case SVMParser.STORETM : popInto(TM); break;
+          case SVMParser.LOADTM : pushWith(() -> iload(TM)); break;
+          case SVMParser.LOADFP : pushWith(() -> iload(FP)); break;
+          case SVMParser.STOREFP : popInto(FP); break;
+          case SVMParser.COPYFP : iload(SP); istore(FP); break;
+          case SVMParser.STOREHP :
+            popInto(HP);
+            op(ALOAD_0); iload(SP); iload(HP);
+            invoke("storeHpAt", "(II)V");
+            break;
+          case SVMParser.LOADHP : pushWith(() -> iload(HP)); break;
+          case SVMParser.PRINT :
+            op(ALOAD_0); iload(SP);
+            invoke("printTop", "(I)V");
+            break;
+          case SVMParser.HALT :
+            iconst(i + 1); istore(IP);
+            writeBack();
+            iconst(HALTED);
+            op(IRETURN);
+            break;
+          case SVMParser.LOADLOCAL :
+            pushWith(() -> { op(ALOAD_0); iload(FP); iconst(a); op(IADD); invoke("load", "(I)I"); });
+            break;
+          case SVMParser.LOADOUTER :
+            chase(a);
+            pushWith(() -> { op(ALOAD_0); iload(T1); iconst(b); op(IADD); invoke("load", "(I)I"); });
+            break;
+          case SVMParser.DUP :
+            op(ALOAD_0); iload(SP); invoke("load", "(I)I"); istore(T1);
+            pushWith(() -> iload(T1));
+            break;
+          case SVMParser.CALLFRAME :
+            chase(a);
+            pushWith(() -> iload(T1));
+            iconst(next); istore(RA);
+            op(ALOAD_0); iload(T1); iconst(b); op(IADD); invoke("load", "(I)I"); istore(IP);
+            jump(GOTO, dispatch);
+            break;
+          case SVMParser.CALL :
+            chase(a);
+            pushWith(() -> iload(T1));
+            iconst(next); istore(RA);
+            jump(GOTO, label(i, b));
+            break;
+          case SVMParser.JUMPANDLINK :
+            iconst(next); istore(RA);
+            jump(GOTO, label(i, a));
+            break;
+          case SVMParser.CALLMETHOD :
+            iconst(next); istore(RA);
+            op(ALOAD_0); iconst(i); iconst(a); iload(SP);
+            invoke("callMethod", "(III)I"); istore(IP);
+            jump(GOTO, dispatch);
+            break;
+          case SVMParser.NEW :
+            op(ALOAD_0); iload(SP); iload(TM); iconst(a); iconst(b);
+            invoke("allocateAt", "(IIII)I");
+            istore(T1);
+            op(ALOAD_0); getfield("sp"); istore(SP);
+            op(ALOAD_0); getfield("hp"); istore(HP);
+            pushWith(() -> iload(T1));
+            break;
+          case SVMParser.LOADGFP :
+            pushWith(() -> { op(ALOAD_0); getfield("memsize"); });
+            break;
+          case SVMParser.ENTER :
+            op(ALOAD_0); iconst(a); iload(FP); invoke("enter", "(II)V");
+            break;
+          case SVMParser.LEAVE :
+            op(ALOAD_0); iconst(a); invoke("leave", "(I)V");
+            break;
+          case SVMParser.LOADDISPLAY :
+            pushWith(() -> { op(ALOAD_0); op(ALOAD_0); iconst(a); invoke("display", "(I)I"); iconst(b); op(IADD); invoke("load", "(I)I"); });
+            break;
+          case SVMParser.PUSHDISPLAY :
+            pushWith(() -> { op(ALOAD_0); iconst(a); invoke("display", "(I)I"); });
+            break;
+          case SVMParser.EQUAL : comparison(IF_ICMPEQ); break;
+          case SVMParser.LESSEQUAL : comparison(IF_ICMPLE); break;
+          case SVMParser.GREATEREQUAL : comparison(IF_ICMPGE); break;
+          case SVMParser.LESS : comparison(IF_ICMPLT); break;
+          case SVMParser.NOT : // replaces the top with 1 if it is 0, with 0 otherwise
+            op(ALOAD_0); iload(SP);
+            op(ALOAD_0); iload(SP); invoke("load", "(I)I");
+            toBoolean(IFEQ);
+            invoke("setStack", "(II)V");
+            break;
+          case SVMParser.BRANCHTRUE :
+          case SVMParser.BRANCHFALSE :
+            popInto(T1);
+            iload(T1);
+            jump(opcode == SVMParser.BRANCHTRUE ? IFNE : IFEQ, label(i, a));
+            break;
+          default : // unknown words are skipped, as in ExecuteVM.cpu()
+        }
+      }
+
+      // label of code address t for the jump of the instruction at i: the instruction there,
+      // or a stub leaving the chunk; a jump back polls the deadline first
+      private int label(int i, int t) {
+        if (polling && t <= i) { op(ALOAD_0); invoke("poll", "()V"); }
+        if (t >= from && t < to && start[t]) return t;
+        stubs.add(t);
+        return -stubs.size();
+      }
+
+      // T1 = frame reached following d Access Links from fp
+      private void chase(int d) {
+        iload(FP);
+        istore(T1);
+        for (int j = 0; j < d; j++) {
+          op(ALOAD_0); iload(T1); invoke("load", "(I)I"); istore(T1);
+        }
+      }
+
+      private void binary(int opcode) {
+        popInto(T1);
+        op(ALOAD_0); iload(SP);
+        op(ALOAD_0); iload(SP); invoke("load", "(I)I");
+        iload(T1);
+        op(opcode);
+        invoke("setStack", "(II)V");
+      }
+
+      // replaces the two words on top with 1 if "ifCmp" holds between them, with 0 otherwise
+      private void comparison(int ifCmp) {
+        popInto(T1);
+        op(ALOAD_0); iload(SP);
+        op(ALOAD_0); iload(SP); invoke("load", "(I)I");
+        iload(T1);
+        toBoolean(ifCmp);
+        invoke("setStack", "(II)V");
+      }
+
+      // consumes the operands of the conditional jump "ifOp" and pushes 1 if it would jump, 0 otherwise
+      private void toBoolean(int ifOp) {
+        op(ifOp); u2(out, 7); // to iconst_1
+        op(ICONST_0);
+        op(GOTO); u2(out, 4); // past iconst_1
+        op(ICONST_0 + 1);
+      }
+
+      private void popInto(int local) {
+        op(ALOAD_0); iload(SP); invoke("load", "(I)I"); istore(local);
+        op(IINC); op(SP); op(1);
+      }
+
+      // "value" must not read sp, which is already decremented
+      private void pushWith(Runnable value) {
+        op(ALOAD_0);
+        op(IINC); op(SP); op(0xff);
+        iload(SP);
+        value.run();
+        invoke("pushAt", "(II)V");
+      }
+
+      private void writeBack() {
+        for (int j = 0; j < REGISTERS.length; j++) {
+          op(ALOAD_0); iload(REGISTERS[j]); putfield(REGISTER_FIELDS[j]);
+        }
+      }
+
+      private void op(int b) {
+        out.write(b);
+      }
+
+      private void iload(int local) {
+        if (local <= 3) op(ILOAD_0 + local);
+        else { op(ILOAD); op(local); }
+      }
+
+      private void istore(int local) {
+        if (local <= 3) op(ISTORE_0 + local);
+        else { op(ISTORE); op(local); }
+      }
+
+      private void iconst(int v) {
+        if (v >= -1 && v <= 5) op(ICONST_0 + v);
+        else if (v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) { op(BIPUSH); op(v); }
+        else if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) { op(SIPUSH); u2(out, v); }
+        else {
+          int index = entry("I" + v, 3, () -> u4(pool, v));
+          if (index < 256) { op(LDC); op(index); }
+          else { op(LDC_W); u2(out, index); }
+        }
+      }
+
+      private void invoke(String name, String descriptor) {
+        op(INVOKEVIRTUAL);
+        u2(out, memberRef(10, name, descriptor));
+      }
+
+      private void getfield(String name) {
+        op(GETFIELD);
+        u2(out, memberRef(9, name, "I"));
+      }
+
+      private void putfield(String name) {
+        op(PUTFIELD);
+        u2(out, memberRef(9, name, "I"));
+      }
+
+      private void jump(int opcode, int label) {
+        int at = out.size();
+        op(opcode);
+        fixup(at, label, 2);
+        u2(out, 0);
+      }
+
+      // the offset to "label" from "base" goes in the next "size" bytes
+      private void fixup(int base, int label, int size) {
+        fixups.add(new int[] {out.size(), base, label, size});
+        if (size == 4) u4(out, 0);
+      }
+
+      // constant pool
+
+      private int entry(String key, int tag, Runnable body) {
+        Integer index = entries.get(key);
+        if (index != null) return index;
+        pool.write(tag);
+        body.run();
+        entries.put(key, poolCount);
+        return poolCount++;
+      }
+
+      private int utf8(String s) {
+        return entry("U" + s, 1, () -> {
+          byte[] bytes = s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+          u2(pool, bytes.length);
+          pool.writeBytes(bytes);
+        });
+      }
+
+      private int classRef(String name) {
+        int n = utf8(name);
+        return entry("C" + name, 7, () -> u2(pool, n));
+      }
+
+      private int memberRef(int tag, String name, String descriptor) {
+        int owner = classRef(VM);
+        int n = utf8(name), d = utf8(descriptor);
+        int nameAndType = entry("N" + name + descriptor, 12, () -> { u2(pool, n); u2(pool, d); });
+        return entry("M" + tag + name + descriptor, tag, () -> { u2(pool, owner); u2(pool, nameAndType); });
+      }
+
+      private static void u2(ByteArrayOutputStream s, int v) {
+        s.write(v >> 8);
+        s.write(v);
+      }
+
+      private static void u4(ByteArrayOutputStream s, int v) {
+        u2(s, v >>> 16);
+        u2(s, v);
+      }
+    }
+
+}
@@ -1,27 +1,127 @@
 package svm;
 public class ExecuteVM {
     
-    public static final int CODESIZE = 10000;
-    public static final int MEMSIZE = 10000;
+    public static final int DEFAULT_MEMSIZE = 1 << 24; // words of address space, unless given to the constructor
+    private static final int INITIAL_REGION = 1024;    // words first backing the heap and the stack
+
+    public static final int DEFAULT_TIER_THRESHOLD = 1000;
+    private static final int POLL_INTERVAL = 1 << 14; // polls of the deadline between two looks at the clock
     
-    private int[] code;
-    private int[] memory = new int[MEMSIZE];
+    // SWITCH interprets code[] directly, THREADED runs it pre-decoded (see ThreadedCode),
+    // JIT runs it translated to JVM bytecode (see CompiledCode), TIERED interprets it and
+    // pre-decodes the functions that get hot (see TieredCode)
+    public enum Mode { SWITCH, THREADED, JIT, TIERED }
     
-    private int ip = 0;
-    private int sp = MEMSIZE;
+    private final Mode mode;
+    private java.util.Map<String,Integer> labels = java.util.Map.of();
+    private int tierThreshold = DEFAULT_TIER_THRESHOLD;
+    private boolean timed;  // whether there is a deadline
+    private long deadline;  // in System.nanoTime()
+    private int polls;
     
-    private int hp = 0;       
-    private int fp = MEMSIZE; 
-    private int ra;           
-    private int tm;
+    int[] code;
+    
+    // the address space [0, memsize) holds the heap, growing up from 0, and the stack,
+    // growing down from memsize: each region is backed by its own array, grown on demand
+    // until $hp would pass $sp, which traps instead of letting the two overlap
+    final int memsize;
+    int[] heap;      // words at addresses [0, heap.length) below stackBase
+    int[] stack;     // words at addresses [stackBase, memsize)
+    int stackBase;
+    
+    int ip = 0;
+    int sp;
+    
+    int hp = 0;       
+    int fp; 
+    int ra;           
+    int tm;
+    
+    // display registers (see SVM.g4), with the values saved by "enter" on a stack of their own
+    int[] display = new int[8];
+    private int[] displaySaves = new int[64];
+    private int displayTop = 0;
+    
+    long cycles = 0; // instructions executed by the interpreter loop below
+    
+    final GarbageCollector gc = new GarbageCollector(this);
+    private final InlineCache[] inlineCaches; // indexed by the code address of the callm
     
     public ExecuteVM(int[] code) {
+      this(code, Mode.SWITCH);
+    }
+    
+    public ExecuteVM(int[] code, Mode mode) {
+      this(code, mode, DEFAULT_MEMSIZE);
+    }
+    
+    public ExecuteVM(int[] code, Mode mode, int memsize) {
+      if (memsize < 2) throw new IllegalArgumentException("memory size " + memsize + " too small");
       this.code = code;
+      this.mode = mode;
+      this.memsize = memsize;
+      inlineCaches = new InlineCache[code.length];
+      int region = Math.min(INITIAL_REGION, memsize / 2);
+      heap = new int[region];
+      stack = new int[region];
+      stackBase = memsize - region;
+      sp = memsize;
+      fp = memsize;
+      display[0] = memsize;
+    }
+    
+    // labels of the code (the "functionN" ones are the function entry points for TIERED)
+    public void setLabels(java.util.Map<String,Integer> labels) {
+      this.labels = labels;
+    }
+    
+    // calls (or backward jumps) after which a function leaves the interpreter in TIERED
+    public void setTierThreshold(int threshold) {
+      tierThreshold = threshold;
+    }
+    
+    // stops the run with a TimeLimitException once System.nanoTime() passes "deadline"; the
+    // engines look at it every so many instructions, calls or backward jumps. It can be
+    // moved while the program runs, from the thread running it, but only cpu() sets up the
+    // engines to look at it
+    public void setDeadline(long deadline) {
+      this.deadline = deadline;
+      timed = true;
+      polls = 0;
+    }
+    
+    boolean timed() {
+      return timed;
+    }
+    
+    void poll() {
+      if (--polls >= 0) return;
+      polls = POLL_INTERVAL;
+      if (System.nanoTime() - deadline > 0) throw new TimeLimitException("time limit exceeded");
     }
     
     public void cpu() {
+      if (mode == Mode.THREADED) {
+        new ThreadedCode(code).run(this);
+        return;
+      }
+      if (mode == Mode.JIT) {
+        CompiledCode compiled = CompiledCode.compile(code, timed);
+        if (compiled != null && compiled.run(this)) return;
+        // a jump the compiled code does not know: go on interpreting
+        if (compiled != null) System.err.println("JIT: jump to " + ip + " not compiled, interpreting from there on");
+      }
+      TieredCode tiers = mode == Mode.TIERED ? new TieredCode(code, labels, tierThreshold) : null;
+      boolean timed = this.timed;
       while ( true ) {
+        if (tiers != null && tiers.optimized(ip)) {
+          ip = tiers.run(this, ip);
+          if (ip < 0) return;
+          continue;
+        }
         int bytecode = code[ip++]; // fetch
+        cycles++;
+        if (timed) poll();
         int v1,v2;
         int address;
         switch ( bytecode ) {
@@ -53,31 +153,39 @@ public class ExecuteVM {
             break;
           case SVMParser.STOREW : //
             address = pop();
-            memory[address] = pop();    
+            store(address, pop());
             break;
           case SVMParser.LOADW : //
-            push(memory[pop()]);
+            push(load(pop()));
             break;
           case SVMParser.BRANCH : 
             address = code[ip];
+            if (tiers != null) tiers.jumpedBack(ip - 1, address);
             ip = address;
             break;
           case SVMParser.BRANCHEQ :
             address = code[ip++];
             v1=pop();
             v2=pop();
-            if (v2 == v1) ip = address;
+            if (v2 == v1) {
+              if (tiers != null) tiers.jumpedBack(ip - 2, address);
+              ip = address;
+            }
             break;
           case SVMParser.BRANCHLESSEQ :
             address = code[ip++];
             v1=pop();
             v2=pop();
-            if (v2 <= v1) ip = address;
+            if (v2 <= v1) {
+              if (tiers != null) tiers.jumpedBack(ip - 2, address);
+              ip = address;
+            }
             break;
           case SVMParser.JS : //
             address = pop();
             ra = ip;
             ip = address;
+            if (tiers != null) tiers.called(ip);
             break;
          case SVMParser.STORERA : //
             ra=pop();
@@ -101,26 +209,270 @@ public class ExecuteVM {
             fp=sp;
             break;
          case SVMParser.STOREHP : //
-            hp=pop();
+            storeHp(pop());
             break;
          case SVMParser.LOADHP : //
             push(hp);
             break;
          case SVMParser.PRINT :
-            System.out.println((sp<MEMSIZE)?memory[sp]:"Empty stack!");
+            System.out.println((sp<memsize)?load(sp):"Empty stack!");
             break;
          case SVMParser.HALT :
             return;
+         case SVMParser.LOADLOCAL :
+            push(load(fp + code[ip++]));
+            break;
+         case SVMParser.LOADOUTER :
+            address = fp;
+            for (v1 = code[ip++]; v1 > 0; v1--) address = load(address); // follow the static chain
+            push(load(address + code[ip++]));
+            break;
+         case SVMParser.DUP :
+            push(load(sp));
+            break;
+         case SVMParser.CALLFRAME :
+            address = fp;
+            for (v1 = code[ip++]; v1 > 0; v1--) address = load(address);
+            push(address); // Access Link
+            v2 = code[ip++];
+            ra = ip;
+            ip = load(address + v2);
+            if (tiers != null) tiers.called(ip);
+            break;
+         case SVMParser.CALL :
+            address = fp;
+            for (v1 = code[ip++]; v1 > 0; v1--) address = load(address);
+            push(address); // Access Link
+            v2 = code[ip++];
+            ra = ip;
+            ip = v2;
+            if (tiers != null) tiers.called(ip);
+            break;
+         case SVMParser.JUMPANDLINK :
+            v1 = code[ip++];
+            ra = ip;
+            ip = v1;
+            if (tiers != null) tiers.called(ip);
+            break;
+         case SVMParser.CALLMETHOD : // object pointer on top is the Access Link
+            v1 = code[ip++];
+            ra = ip;
+            ip = inlineCache(ip - 2, v1).target(this, load(load(sp)));
+            if (tiers != null) tiers.called(ip);
+            break;
+         case SVMParser.NEW :
+            v1 = code[ip++];
+            v2 = code[ip++];
+            push(allocate(v1, v2));
+            break;
+         case SVMParser.LOADGFP :
+            push(memsize);
+            break;
+         case SVMParser.ENTER :
+            enter(code[ip++], fp);
+            break;
+         case SVMParser.LEAVE :
+            leave(code[ip++]);
+            break;
+         case SVMParser.LOADDISPLAY :
+            v1 = code[ip++];
+            v2 = code[ip++];
+            push(load(display[v1] + v2));
+            break;
+         case SVMParser.PUSHDISPLAY :
+            push(display[code[ip++]]);
+            break;
+         case SVMParser.EQUAL :
+            v1 = pop();
+            push(pop() == v1 ? 1 : 0);
+            break;
+         case SVMParser.LESSEQUAL :
+            v1 = pop();
+            push(pop() <= v1 ? 1 : 0);
+            break;
+         case SVMParser.GREATEREQUAL :
+            v1 = pop();
+            push(pop() >= v1 ? 1 : 0);
+            break;
+         case SVMParser.LESS :
+            v1 = pop();
+            push(pop() < v1 ? 1 : 0);
+            break;
+         case SVMParser.NOT :
+            push(pop() == 0 ? 1 : 0);
+            break;
+         case SVMParser.BRANCHTRUE :
+         case SVMParser.BRANCHFALSE :
+            address = code[ip++];
+            if ((pop() != 0) == (bytecode == SVMParser.BRANCHTRUE)) {
+              if (tiers != null) tiers.jumpedBack(ip - 2, address);
+              ip = address;
+            }
+            break;
         }
       }
     } 
     
-    private int pop() {
-      return memory[sp++];
+    // words stored through shp are not known to the collector, so they are never moved
+    void storeHp(int v) {
+      if (v > sp) throw new TrapException("out of memory");
+      if (v > stackBase) releaseStack(v);
+      hp = v;
+      gc.pinBelow(v);
+    }
+    
+    // pops the dispatch pointer and then the n fields (the last popped goes lowest) into
+    // a hole left by the collector or at $hp, collecting first when the heap is full
+    // (it grows when a collection leaves it more than half full); returns the object pointer
+    int allocate(int fields, int refMask) {
+      int words = fields + 1;
+      int start = gc.allocateInGap(words);
+      if (start < 0 && hp + words > heap.length) {
+        gc.collect();
+        start = gc.allocateInGap(words);
+        if (start < 0 && hp + words > heap.length / 2) growHeap(hp + words);
+      }
+      if (start < 0) {
+        if (hp + words > sp) throw new TrapException("out of memory");
+        if (hp + words > stackBase) releaseStack(hp + words);
+        if (hp + words > heap.length) growHeap(hp + words);
+        start = hp;
+        hp += words;
+      }
+      int obj = start + fields;
+      heap[obj] = pop();
+      for (int j = 0; j < fields; j++) heap[start + j] = pop();
+      gc.record(obj, words, refMask);
+      return obj;
+    }
+    
+    void enter(int level, int fp) {
+      if (level >= display.length) display = java.util.Arrays.copyOf(display, 2 * level);
+      if (displayTop == displaySaves.length) displaySaves = java.util.Arrays.copyOf(displaySaves, 2 * displayTop);
+      displaySaves[displayTop++] = display[level];
+      display[level] = fp;
+    }
+    
+    void leave(int level) {
+      display[level] = displaySaves[--displayTop];
+    }
+    
+    int display(int level) {
+      return display[level];
+    }
+    
+    InlineCache inlineCache(int site, int offset) {
+      InlineCache cache = inlineCaches[site];
+      if (cache == null) inlineCaches[site] = cache = new InlineCache(site, offset);
+      return cache;
+    }
+    
+    // instructions executed so far, all of them in SWITCH mode, only the interpreted ones otherwise
+    public long getCycles() {
+      return cycles;
+    }
+    
+    // hit rates of the inline caches of the callm sites executed, one line per site
+    public String inlineCacheReport() {
+      StringBuilder report = new StringBuilder();
+      for (InlineCache cache : inlineCaches) if (cache != null) report.append(cache).append('\n');
+      return report.toString();
+    }
+    
+    // helpers for compiled code, which keeps sp in a local and passes it along
+    
+    void pushAt(int sp, int v) {
+      if (sp < stackBase) {
+        this.sp = sp + 1;
+        growStack();
+      }
+      stack[sp - stackBase] = v;
+    }
+    
+    void setStack(int address, int v) {
+      stack[address - stackBase] = v;
+    }
+    
+    void storeAt(int sp, int address, int v) {
+      this.sp = sp;
+      store(address, v);
+    }
+    
+    void storeHpAt(int sp, int v) {
+      this.sp = sp;
+      storeHp(v);
+    }
+    
+    int allocateAt(int sp, int tm, int fields, int refMask) {
+      this.sp = sp;
+      this.tm = tm;
+      return allocate(fields, refMask);
+    }
+    
+    int callMethod(int site, int offset, int sp) {
+      return inlineCache(site, offset).target(this, load(load(sp)));
+    }
+    
+    void printTop(int sp) {
+      System.out.println((sp<memsize)?load(sp):"Empty stack!");
+    }
+    
+    // addresses outside [0, memsize), and those between the heap and the stack that were
+    // never stored to, trap
+    int load(int address) {
+      if (address >= stackBase) {
+        if (address >= memsize) throw new TrapException("load from address " + address + " out of memory");
+        return stack[address - stackBase];
+      }
+      if (address < 0 || address >= heap.length) throw new TrapException("load from address " + address + " out of memory");
+      return heap[address];
+    }
+    
+    void store(int address, int v) {
+      if (address < 0 || address >= memsize) throw new TrapException("store to address " + address + " out of memory");
+      if (address >= stackBase) {
+        if (address >= sp) {
+          stack[address - stackBase] = v;
+          return;
+        }
+        releaseStack(address + 1); // a heap word in space the stack is not using
+      }
+      if (address >= heap.length) growHeap(address + 1);
+      heap[address] = v;
+    }
+    
+    int pop() {
+      return stack[sp++ - stackBase];
+    }
+    
+    void push(int v) {
+      if (sp == stackBase) growStack();
+      stack[--sp - stackBase] = v;
+    }
+    
+    private void growHeap(int words) {
+      heap = java.util.Arrays.copyOf(heap, Math.max(words, Math.min(heap.length * 2, memsize)));
+    }
+    
+    // doubles the stack region, taking over the words the heap has stored above $hp
+    private void growStack() {
+      int used = memsize - stackBase;
+      int base = Math.max(hp, memsize - 2 * used);
+      if (base >= sp) throw new TrapException("stack overflow");
+      int[] s = new int[memsize - base];
+      System.arraycopy(stack, 0, s, stackBase - base, used);
+      int end = Math.min(stackBase, heap.length);
+      if (end > base) System.arraycopy(heap, base, s, 0, end - base);
+      stack = s;
+      stackBase = base;
     }
     
-    private void push(int v) {
-      memory[--sp] = v;
+    // gives the unused stack words below address "base" (at most $sp) back to the heap
+    private void releaseStack(int base) {
+      if (base > heap.length) growHeap(base);
+      System.arraycopy(stack, 0, heap, stackBase, base - stackBase);
+      stack = java.util.Arrays.copyOfRange(stack, base - stackBase, stack.length);
+      stackBase = base;
     }
     
-}
\ No newline at end of file
+}
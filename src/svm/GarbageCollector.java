@@ -0,0 +1,181 @@
+package svm;
+
+// Mark-compact collector for the objects allocated by the "new" instruction.
+//
+// Each object is recorded at allocation with the layout given by the compiler: its
+// size (fields plus dispatch pointer) and a mask telling which fields are references,
+// so the heap is traced precisely. Stack words between sp and memsize carry no type,
+// so they are ambiguous roots: a word is a root only if it is the pointer of a recorded
+// object, and objects reached this way are pinned (marked but never moved), since the
+// word could be an integer and must not be rewritten. Every other live object is slid
+// down over the dead ones and the reference fields pointing to it are updated.
+// Pinned objects stop the sliding, so the holes left right below them are kept in a
+// list of gaps that allocation fills (first fit) before bumping $hp.
+//
+// Words stored with lhp/sw/shp (dispatch tables, objects built by older code) are
+// not objects the collector knows about: shp pins everything below the new $hp.
+// With -Dgc.verbose=true each collection prints its pause and what it reclaimed to System.err.
+class GarbageCollector {
+
+    private static final int PRECISE_FIELDS = 31; // fields after these are scanned as ambiguous
+    private static final boolean VERBOSE = Boolean.getBoolean("gc.verbose");
+
+    private static final byte REACHED = 1;
+    private static final byte PINNED = 2;
+
+    private final ExecuteVM vm;
+
+    private int[] size = new int[0]; // indexed by object pointer, 0 if no object
+    private int[] mask = new int[0]; // bit j set if the field at offset -(j+1) is a reference
+    private int base = 0; // objects below base are never moved
+
+    private int[] gapStart = new int[16], gapEnd = new int[16]; // free holes below $hp, left by pinned objects
+    private int gaps = 0;
+
+    private int collections = 0;
+
+    GarbageCollector(ExecuteVM vm) {
+      this.vm = vm;
+    }
+
+    void record(int pointer, int words, int refMask) {
+      if (pointer >= size.length) {
+        int length = Math.max(pointer + 1, vm.heap.length);
+        size = java.util.Arrays.copyOf(size, length);
+        mask = java.util.Arrays.copyOf(mask, length);
+      }
+      size[pointer] = words;
+      mask[pointer] = refMask;
+    }
+
+    void pinBelow(int address) {
+      if (address > base) {
+        base = address;
+        gaps = 0;
+      }
+    }
+
+    // returns the first address of a hole of at least "words" free words, or -1
+    int allocateInGap(int words) {
+      for (int g = 0; g < gaps; g++) {
+        if (gapEnd[g] - gapStart[g] < words) continue;
+        int start = gapStart[g];
+        gapStart[g] += words;
+        if (gapStart[g] == gapEnd[g]) {
+          gaps--;
+          gapStart[g] = gapStart[gaps];
+          gapEnd[g] = gapEnd[gaps];
+        }
+        return start;
+      }
+      return -1;
+    }
+
+    private boolean isObject(int v, int hp) {
+      return v >= 0 && v < hp && v < size.length && size[v] != 0;
+    }
+
+    void collect() {
+      long start = System.nanoTime();
+      int[] memory = vm.heap;
+      int hp = vm.hp;
+      byte[] marks = new byte[hp];
+
+      // mark: ambiguous roots first, then the precise fields of every reached object
+      int[] work = new int[64];
+      int top = 0;
+      for (int a = vm.sp; a <= vm.memsize; a++) {
+        int v = a < vm.memsize ? vm.load(a) : vm.tm;
+        if (isObject(v, hp) && marks[v] != PINNED) {
+          if (marks[v] == 0) {
+            if (top == work.length) work = java.util.Arrays.copyOf(work, top * 2);
+            work[top++] = v;
+          }
+          marks[v] = PINNED;
+        }
+      }
+      while (top > 0) {
+        int p = work[--top];
+        int fields = size[p] - 1;
+        for (int j = 0; j < fields; j++) {
+          int v = memory[p - 1 - j];
+          if (!isObject(v, hp)) continue;
+          boolean precise = j < PRECISE_FIELDS;
+          if (precise && (mask[p] >> j & 1) == 0) continue;
+          if (marks[v] == 0) {
+            if (top == work.length) work = java.util.Arrays.copyOf(work, top * 2);
+            work[top++] = v;
+            marks[v] = precise ? REACHED : PINNED;
+          } else if (!precise) marks[v] = PINNED;
+        }
+      }
+
+      // compute new addresses, in address order so that an object only moves down
+      int[] live = new int[64];
+      int count = 0;
+      int[] forward = new int[hp];
+      int free = base;
+      gaps = 0;
+      for (int p = 0; p < hp; p++) {
+        if (marks[p] == 0) continue;
+        if (p < base) forward[p] = p;
+        else if (marks[p] == PINNED) {
+          forward[p] = p;
+          if (p - size[p] + 1 > free) addGap(free, p - size[p] + 1);
+          free = p + 1;
+        } else {
+          forward[p] = free + size[p] - 1;
+          free += size[p];
+        }
+        if (count == live.length) live = java.util.Arrays.copyOf(live, count * 2);
+        live[count++] = p;
+      }
+
+      // update reference fields, then move objects and their layout records
+      for (int i = 0; i < count; i++) {
+        int p = live[i];
+        int fields = Math.min(size[p] - 1, PRECISE_FIELDS);
+        for (int j = 0; j < fields; j++) {
+          int v = memory[p - 1 - j];
+          if ((mask[p] >> j & 1) != 0 && isObject(v, hp) && marks[v] != 0) memory[p - 1 - j] = forward[v];
+        }
+      }
+      int[] liveSize = new int[count];
+      int[] liveMask = new int[count];
+      for (int i = 0; i < count; i++) {
+        int p = live[i];
+        liveSize[i] = size[p];
+        liveMask[i] = mask[p];
+        if (p >= base) System.arraycopy(memory, p - size[p] + 1, memory, forward[p] - size[p] + 1, size[p]);
+      }
+      int end = Math.min(hp, size.length);
+      if (base < end) {
+        java.util.Arrays.fill(size, base, end, 0);
+        java.util.Arrays.fill(mask, base, end, 0);
+      }
+      for (int i = 0; i < count; i++) {
+        int p = forward[live[i]];
+        if (p >= base) record(p, liveSize[i], liveMask[i]);
+      }
+      vm.hp = Math.max(free, base);
+
+      collections++;
+      if (!VERBOSE) return;
+      int holes = 0;
+      for (int g = 0; g < gaps; g++) holes += gapEnd[g] - gapStart[g];
+      long pause = System.nanoTime() - start;
+      System.err.println("GC #" + collections + ": pause " + String.format("%.3f", pause / 1e6) + " ms, reclaimed "
+          + (hp - vm.hp + holes) * Integer.BYTES + " bytes, " + (vm.hp - base - holes) * Integer.BYTES + " bytes live in movable heap, "
+          + gaps + " gaps (" + holes * Integer.BYTES + " bytes)");
+    }
+
+    private void addGap(int start, int end) {
+      if (gaps == gapStart.length) {
+        gapStart = java.util.Arrays.copyOf(gapStart, gaps * 2);
+        gapEnd = java.util.Arrays.copyOf(gapEnd, gaps * 2);
+      }
+      gapStart[gaps] = start;
+      gapEnd[gaps++] = end;
+    }
+
+}
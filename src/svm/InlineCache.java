@@ -0,0 +1,66 @@
+package svm;
+
+// Inline cache of a "callm" call site: the dispatch pointer seen last and the method
+// address it resolved to, backed by a few more pairs for polymorphic sites.
+// Dispatch tables are written once, when classes are declared, and are never moved
+// by the collector, so a resolved pair stays valid for the whole run.
+class InlineCache {
+
+    static final int POLYMORPHIC_ENTRIES = 4;
+
+    final int site; // code address of the callm
+    private final int offset;
+
+    private int dispatch = -1, target;
+    private final int[] dispatches = new int[POLYMORPHIC_ENTRIES], targets = new int[POLYMORPHIC_ENTRIES];
+    private int entries = 0, replace = 0;
+
+    long hits, polymorphicHits, misses;
+
+    InlineCache(int site, int offset) {
+      this.site = site;
+      this.offset = offset;
+    }
+
+    // address of the method at "offset" in the dispatch table of the receiver
+    int target(ExecuteVM vm, int dispatchPointer) {
+      if (dispatchPointer == dispatch) {
+        hits++;
+        return target;
+      }
+      for (int j = 0; j < entries; j++)
+        if (dispatches[j] == dispatchPointer) { // swapped with the monomorphic entry
+          polymorphicHits++;
+          int resolved = targets[j];
+          dispatches[j] = dispatch;
+          targets[j] = target;
+          return remember(dispatchPointer, resolved);
+        }
+      misses++;
+      int resolved = vm.load(dispatchPointer + offset);
+      if (dispatch != -1) { // the monomorphic entry moves to the polymorphic ones
+        int j = entries < POLYMORPHIC_ENTRIES ? entries++ : replace++ % POLYMORPHIC_ENTRIES;
+        dispatches[j] = dispatch;
+        targets[j] = target;
+      }
+      return remember(dispatchPointer, resolved);
+    }
+
+    private int remember(int dispatchPointer, int resolved) {
+      dispatch = dispatchPointer;
+      target = resolved;
+      return resolved;
+    }
+
+    @Override
+    public String toString() {
+      long calls = hits + polymorphicHits + misses;
+      return "callm at " + site + ": " + calls + " calls, " + percent(hits, calls) + " monomorphic hits, "
+          + percent(polymorphicHits, calls) + " polymorphic hits, " + misses + " misses";
+    }
+
+    private static String percent(long n, long total) {
+      return String.format("%.1f%%", total == 0 ? 0.0 : 100.0 * n / total);
+    }
+
+}
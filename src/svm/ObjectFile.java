@@ -0,0 +1,118 @@
+package svm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+// Assembled code in binary form (.svmo), loaded without going through the ANTLR
+// lexer and parser. Layout, all integers big-endian:
+//   magic "SVMO", version (u2), flags (u2: 1 = debug info present),
+//   fingerprint of the instruction set (s4: opcodes are SVMLexer token types),
+//   code length n (s4) and n words (s4),
+//   number of labels (s4), each as name length (u2), UTF-8 name, address (s4),
+//   with debug info: number of entries (s4), each as code address (s4) and .asm line (s4).
+public class ObjectFile {
+
+    public static final int VERSION = 1;
+    private static final int MAGIC = 0x53564D4F; // "SVMO"
+    private static final int DEBUG_INFO = 1;
+
+    public final int[] code;
+    public final Map<String,Integer> labels;
+    public final Map<Integer,Integer> lines; // line of each instruction in the .asm source, empty without debug info
+
+    public ObjectFile(int[] code, Map<String,Integer> labels, Map<Integer,Integer> lines) {
+      this.code = code;
+      this.labels = labels;
+      this.lines = lines;
+    }
+
+    // changes whenever opcodes are added, removed or renumbered in SVM.g4
+    public static int fingerprint() {
+      CRC32 crc = new CRC32();
+      for (int t = 1; t <= SVMLexer.VOCABULARY.getMaxTokenType(); t++) {
+        String name = SVMLexer.VOCABULARY.getSymbolicName(t) + "=" + SVMLexer.VOCABULARY.getLiteralName(t) + ";";
+        crc.update(name.getBytes(StandardCharsets.UTF_8));
+      }
+      return (int) crc.getValue();
+    }
+
+    public void write(Path file) throws IOException {
+      Files.write(file, toBytes());
+    }
+
+    // the contents of the .svmo file
+    public byte[] toBytes() {
+      int size = 20 + 4 * code.length + 4;
+      Map<String,byte[]> names = new LinkedHashMap<>();
+      for (String label : labels.keySet()) {
+        byte[] name = label.getBytes(StandardCharsets.UTF_8);
+        names.put(label, name);
+        size += 2 + name.length + 4;
+      }
+      if (!lines.isEmpty()) size += 4 + 8 * lines.size();
+      ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+      out.putInt(MAGIC);
+      out.putShort((short) VERSION);
+      out.putShort((short) (lines.isEmpty() ? 0 : DEBUG_INFO));
+      out.putInt(fingerprint());
+      out.putInt(code.length);
+      out.asIntBuffer().put(code);
+      out.position(out.position() + 4 * code.length);
+      out.putInt(labels.size());
+      for (Map.Entry<String,byte[]> name : names.entrySet()) {
+        out.putShort((short) name.getValue().length);
+        out.put(name.getValue());
+        out.putInt(labels.get(name.getKey()));
+      }
+      if (!lines.isEmpty()) {
+        out.putInt(lines.size());
+        for (Map.Entry<Integer,Integer> line : lines.entrySet()) {
+          out.putInt(line.getKey());
+          out.putInt(line.getValue());
+        }
+      }
+      return out.array();
+    }
+
+    public static ObjectFile read(Path file) throws IOException {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        try {
+          if (in.getInt() != MAGIC) throw new IOException(file + " is not an SVM object file");
+          int version = in.getShort() & 0xffff;
+          if (version != VERSION) throw new IOException(file + " has version " + version + ", expected " + VERSION);
+          int flags = in.getShort() & 0xffff;
+          if (in.getInt() != fingerprint()) throw new IOException(file + " was assembled for a different instruction set");
+          int[] code = new int[in.getInt()];
+          IntBuffer words = in.asIntBuffer();
+          words.get(code);
+          in.position(in.position() + 4 * code.length);
+          Map<String,Integer> labels = new LinkedHashMap<>();
+          for (int n = in.getInt(); n > 0; n--) {
+            byte[] name = new byte[in.getShort() & 0xffff];
+            in.get(name);
+            labels.put(new String(name, StandardCharsets.UTF_8), in.getInt());
+          }
+          Map<Integer,Integer> lines = new TreeMap<>();
+          if ((flags & DEBUG_INFO) != 0)
+            for (int n = in.getInt(); n > 0; n--) lines.put(in.getInt(), in.getInt());
+          return new ObjectFile(code, labels, lines);
+        } catch (java.nio.BufferUnderflowException | NegativeArraySizeException e) {
+          throw new IOException(file + " is truncated or corrupt");
+        }
+      }
+    }
+
+}
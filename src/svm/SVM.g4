@@ -2,6 +2,8 @@ grammar SVM;
 
 @parser::header {
 import java.util.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 }
 
 @lexer::members {
@@ -9,10 +11,43 @@ public int lexicalErrors=0;
 }
    
 @parser::members { 
-public int[] code = new int[ExecuteVM.CODESIZE];    
+public int[] code = new int[1024];    
 private int i = 0;
 private Map<String,Integer> labelDef = new HashMap<>();
 private Map<Integer,String> labelRef = new HashMap<>();
+private Map<Integer,Integer> lineDef = new TreeMap<>(); // .asm line of each instruction
+
+public Map<String,Integer> getLabels() { return labelDef; }
+public Map<Integer,Integer> getLines() { return lineDef; }
+
+// assembly() with SLL prediction first, bailing out at the first syntax error, and only then
+// again from the start, with what the actions built so far dropped, with full LL prediction
+// and the usual error reporting
+public AssemblyContext twoStageAssembly() {
+	List<ANTLRErrorListener> listeners = new ArrayList<>(getErrorListeners());
+	removeErrorListeners(); // the error bailing out is reported by the second stage
+	getInterpreter().setPredictionMode(PredictionMode.SLL);
+	setErrorHandler(new BailErrorStrategy());
+	try {
+		return assembly();
+	} catch (ParseCancellationException e) {
+		listeners.forEach(this::addErrorListener);
+		listeners = null;
+		reset();
+		code = new int[1024];
+		i = 0;
+		labelDef.clear();
+		labelRef.clear();
+		lineDef.clear();
+		getInterpreter().setPredictionMode(PredictionMode.LL);
+		setErrorHandler(new DefaultErrorStrategy());
+		return assembly();
+	} finally {
+		if (listeners != null) listeners.forEach(this::addErrorListener);
+		getInterpreter().setPredictionMode(PredictionMode.LL);
+		setErrorHandler(new DefaultErrorStrategy());
+	}
+}
 }
 
 /*------------------------------------------------------------------
@@ -21,9 +56,13 @@ private Map<Integer,String> labelRef = new HashMap<>();
    
 assembly: instruction* EOF 	{ for (Integer j: labelRef.keySet()) 
 								code[j]=labelDef.get(labelRef.get(j)); 
+							  code = Arrays.copyOf(code, i);
 							} ;
 
-instruction : 
+instruction 
+@init { if (i + 3 > code.length) code = Arrays.copyOf(code, code.length * 2); // room for the longest instruction
+        lineDef.put(i, _input.LT(1).getLine()); }
+	  : 
         PUSH n=INTEGER   {code[i++] = PUSH; 
 			              code[i++] = Integer.parseInt($n.text);}
 	  | PUSH l=LABEL    {code[i++] = PUSH; 
@@ -54,6 +93,44 @@ instruction :
 	  | STOREHP         {code[i++] = STOREHP;}   //
 	  | PRINT           {code[i++] = PRINT;}
 	  | HALT            {code[i++] = HALT;}
+	  | LOADLOCAL n=INTEGER  {code[i++] = LOADLOCAL;
+			                  code[i++] = Integer.parseInt($n.text);}
+	  | LOADOUTER d=INTEGER n=INTEGER {code[i++] = LOADOUTER;
+			                  code[i++] = Integer.parseInt($d.text);
+			                  code[i++] = Integer.parseInt($n.text);}
+	  | DUP             {code[i++] = DUP;}
+	  | CALLFRAME d=INTEGER n=INTEGER {code[i++] = CALLFRAME;
+			                  code[i++] = Integer.parseInt($d.text);
+			                  code[i++] = Integer.parseInt($n.text);}
+	  | CALLMETHOD n=INTEGER {code[i++] = CALLMETHOD;
+			                  code[i++] = Integer.parseInt($n.text);}
+	  | NEW n=INTEGER m=INTEGER {code[i++] = NEW;
+			                  code[i++] = Integer.parseInt($n.text);
+			                  code[i++] = Integer.parseInt($m.text);}
+	  | LOADGFP         {code[i++] = LOADGFP;}
+	  | EQUAL           {code[i++] = EQUAL;}
+	  | LESSEQUAL       {code[i++] = LESSEQUAL;}
+	  | GREATEREQUAL    {code[i++] = GREATEREQUAL;}
+	  | LESS            {code[i++] = LESS;}
+	  | NOT             {code[i++] = NOT;}
+	  | BRANCHTRUE l=LABEL {code[i++] = BRANCHTRUE;
+                        labelRef.put(i++,$l.text);}
+	  | BRANCHFALSE l=LABEL {code[i++] = BRANCHFALSE;
+                         labelRef.put(i++,$l.text);}
+	  | CALL d=INTEGER l=LABEL {code[i++] = CALL;
+			                  code[i++] = Integer.parseInt($d.text);
+                        labelRef.put(i++,$l.text);}
+	  | JUMPANDLINK l=LABEL {code[i++] = JUMPANDLINK;
+                         labelRef.put(i++,$l.text);}
+	  | ENTER n=INTEGER {code[i++] = ENTER;
+			                  code[i++] = Integer.parseInt($n.text);}
+	  | LEAVE n=INTEGER {code[i++] = LEAVE;
+			                  code[i++] = Integer.parseInt($n.text);}
+	  | LOADDISPLAY n=INTEGER m=INTEGER {code[i++] = LOADDISPLAY;
+			                  code[i++] = Integer.parseInt($n.text);
+			                  code[i++] = Integer.parseInt($m.text);}
+	  | PUSHDISPLAY n=INTEGER {code[i++] = PUSHDISPLAY;
+			                  code[i++] = Integer.parseInt($n.text);}
 	  ;
 	  
 /*------------------------------------------------------------------
@@ -83,6 +160,36 @@ LOADHP	 : 'lhp' ;
 STOREHP	 : 'shp' ;	
 PRINT	 : 'print' ;	
 HALT	 : 'halt' ;	
+
+// superinstructions for the sequences emitted by the code generator
+LOADLOCAL : 'lloc' ;   // lloc k   = lfp, push k, add, lw
+LOADOUTER : 'lout' ;   // lout d k = lfp, lw * d, push k, add, lw
+DUP	 : 'dup' ;        // duplicates the top of the stack
+CALLFRAME : 'callf' ;  // callf d k = lfp, lw * d, stm, ltm, ltm, push k, add, lw, js
+CALLMETHOD : 'callm' ; // callm k   = stm, ltm, ltm, lw, push k, add, lw, js
+NEW	 : 'new' ;        // new n m: allocates an object with n fields (m marks reference fields)
+
+LOADGFP	 : 'lgfp' ;       // pushes the frame pointer of the global environment
+
+// comparisons of the two words on top (the second one on the left) pushing 1 or 0,
+// and branches on a boolean popped from the stack
+EQUAL	 : 'eq' ;
+LESSEQUAL : 'le' ;
+GREATEREQUAL : 'ge' ;
+LESS	 : 'lt' ;
+NOT	 : 'not' ;        // 1 if the top is 0, 0 otherwise
+BRANCHTRUE : 'bt' ;    // bt l: pops a word and jumps to l unless it is 0
+BRANCHFALSE : 'bf' ;   // bf l: pops a word and jumps to l if it is 0
+
+CALL	 : 'call' ;       // call d l = lfp, lw * d, stm, ltm, ltm, push l, js (a function known when assembling)
+JUMPANDLINK : 'jal' ;   // jal l = push l, js (a method known when assembling, Access Link already pushed)
+
+// display registers: register n holds the frame of nesting level n the running code sees
+// (register 0 the global frame), so reaching it takes no walk along the static chain
+ENTER	 : 'enter' ;      // enter n: saves register n and sets it to $fp
+LEAVE	 : 'leave' ;      // leave n: restores register n as it was before the matching enter
+LOADDISPLAY : 'ldis' ;  // ldis n k: pushes the word at offset k in the frame held by register n
+PUSHDISPLAY : 'pdis' ;  // pdis n: pushes the frame held by register n
  
 COL	 : ':' ;
 LABEL	 : ('a'..'z'|'A'..'Z')('a'..'z' | 'A'..'Z' | '0'..'9')* ;
@@ -1,26 +1,63 @@
 package svm;
 
-import org.antlr.v4.runtime.*;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 public class TestASM {
+
+    static final int ASM_MEMSIZE = 10000;
+
     public static void main(String[] args) throws Exception {
      
-        String fileName = "bankloan2.fool.asm";
-                
-        CharStream charsASM = CharStreams.fromFileName(fileName);
-        SVMLexer lexerASM = new SVMLexer(charsASM);
-        CommonTokenStream tokensASM = new CommonTokenStream(lexerASM);
-        SVMParser parserASM = new SVMParser(tokensASM);
-        
-        
-        parserASM.assembly();
-        
-        System.out.println("You had: "+lexerASM.lexicalErrors+" lexical errors and "+parserASM.getNumberOfSyntaxErrors()+" syntax errors.");
-        if (lexerASM.lexicalErrors>0 || parserASM.getNumberOfSyntaxErrors()>0) System.exit(1);
+        String fileName = args.length > 0 ? args[0] : "bankloan2.fool.asm";
+        ExecuteVM.Mode mode = args.length > 1 ? ExecuteVM.Mode.valueOf(args[1].toUpperCase()) : ExecuteVM.Mode.SWITCH;
+        // the .asm files in the repository were generated for a memory of 10000 words, and
+        // hard-code addresses such as "push 9997": text input runs with that size by default
+        int memsize = args.length > 2 ? Integer.parseInt(args[2])
+            : fileName.endsWith(".svmo") ? ExecuteVM.DEFAULT_MEMSIZE : ASM_MEMSIZE;
+
+        // x.svmo is run as it is; x.asm is assembled only if x.svmo is missing or older
+        Path source = Path.of(fileName);
+        Path object = fileName.endsWith(".svmo") ? source : Path.of(fileName.replaceFirst("\\.asm$", "") + ".svmo");
+        ObjectFile program = null;
+        if (Files.exists(object) && (object == source || !Files.exists(source)
+            || Files.getLastModifiedTime(object).compareTo(Files.getLastModifiedTime(source)) >= 0)) {
+            try {
+                program = ObjectFile.read(object);
+                System.out.println("Loaded " + object + ".");
+            } catch (IOException e) {
+                if (object == source) {
+                    System.out.println(e.getMessage() + ".");
+                    System.exit(1);
+                }
+                System.out.println(e.getMessage() + ", assembling " + source + " again.");
+            }
+        }
+        if (program == null) {
+            Assembler assembler;
+            try (Reader in = Files.newBufferedReader(source)) {
+                assembler = new Assembler(in);
+                assembler.assembly();
+            }
+            
+            System.out.println("You had: "+assembler.lexicalErrors+" lexical errors and "+assembler.syntaxErrors+" syntax errors.");
+            if (assembler.lexicalErrors>0 || assembler.syntaxErrors>0) System.exit(1);
+
+            program = new ObjectFile(assembler.code, assembler.getLabels(), assembler.getLines());
+            program.write(object);
+        }
 
         System.out.println("Starting Virtual Machine...");
-        ExecuteVM vm = new ExecuteVM(parserASM.code);
-        vm.cpu();
+        ExecuteVM vm = new ExecuteVM(program.code, mode, memsize);
+        vm.setLabels(program.labels);
+        try {
+          vm.cpu();
+        } catch (TrapException e) {
+          System.out.println("SVM trap: " + e.getMessage());
+        }
+        System.err.print(vm.inlineCacheReport());
         
       
     }
@@ -0,0 +1,479 @@
+package svm;
+
+// Pre-decoded form of assembled code: code[] is decoded once into one handler per
+// instruction start, with operands already fetched and branch targets resolved.
+// Handlers are indexed by code address, so addresses computed at run time
+// (return addresses, "push label" values used by js) need no translation.
+// The fixed instruction sequences emitted by the code generator (variable access,
+// calls, epilogues, comparisons) are fused into a single handler, which is where
+// most of the gain over the switch in ExecuteVM.cpu() comes from.
+class ThreadedCode {
+
+    interface Handler {
+      int exec(ExecuteVM vm); // returns the address of the next instruction, -1 to halt
+    }
+
+    private final int[] code;
+    final Handler[] handlers;
+
+    ThreadedCode(int[] code) {
+      this(code, 0, code.length);
+    }
+
+    // decodes only the instructions starting in [from, to): the other handlers stay null
+    ThreadedCode(int[] code, int from, int to) {
+      this.code = code;
+      handlers = new Handler[code.length];
+      decode(from, to);
+    }
+
+    // "from" must be an instruction start
+    void decode(int from, int to) {
+      int i = from;
+      while (i < to) i = decode(code, i);
+      // every instruction start keeps its own handler, so a fused handler is only an
+      // entry point: jumps into the middle of a fused sequence still find a handler
+      for (i = from; i < to; i = next(code, i)) {
+        Handler h = fuse(code, i);
+        if (h != null) handlers[i] = h;
+      }
+    }
+
+    // decodes the instruction at address i and returns the address of the following one
+    private int decode(int[] code, int i) {
+      int next = i + 1;
+      Handler h;
+      switch ( code[i] ) {
+        case SVMParser.PUSH : {
+          int v = fetch(code, next++);
+          int n = next;
+          h = vm -> { vm.push(v); return n; };
+          break;
+        }
+        case SVMParser.POP : {
+          int n = next;
+          h = vm -> { vm.sp++; return n; };
+          break;
+        }
+        case SVMParser.ADD : {
+          int n = next;
+          h = vm -> { int v1 = vm.pop(); vm.push(vm.pop() + v1); return n; };
+          break;
+        }
+        case SVMParser.MULT : {
+          int n = next;
+          h = vm -> { int v1 = vm.pop(); vm.push(vm.pop() * v1); return n; };
+          break;
+        }
+        case SVMParser.DIV : {
+          int n = next;
+          h = vm -> { int v1 = vm.pop(); vm.push(vm.pop() / v1); return n; };
+          break;
+        }
+        case SVMParser.SUB : {
+          int n = next;
+          h = vm -> { int v1 = vm.pop(); vm.push(vm.pop() - v1); return n; };
+          break;
+        }
+        case SVMParser.STOREW : {
+          int n = next;
+          h = vm -> { int address = vm.pop(); vm.store(address, vm.pop()); return n; };
+          break;
+        }
+        case SVMParser.LOADW : {
+          int n = next;
+          h = vm -> { vm.push(vm.load(vm.pop())); return n; };
+          break;
+        }
+        case SVMParser.BRANCH : {
+          int target = fetch(code, next++);
+          h = vm -> target;
+          break;
+        }
+        case SVMParser.BRANCHEQ : {
+          int target = fetch(code, next++);
+          int n = next;
+          h = vm -> { int v1 = vm.pop(); int v2 = vm.pop(); return v2 == v1 ? target : n; };
+          break;
+        }
+        case SVMParser.BRANCHLESSEQ : {
+          int target = fetch(code, next++);
+          int n = next;
+          h = vm -> { int v1 = vm.pop(); int v2 = vm.pop(); return v2 <= v1 ? target : n; };
+          break;
+        }
+        case SVMParser.JS : {
+          int n = next;
+          h = vm -> { vm.ra = n; return vm.pop(); };
+          break;
+        }
+        case SVMParser.STORERA : {
+          int n = next;
+          h = vm -> { vm.ra = vm.pop(); return n; };
+          break;
+        }
+        case SVMParser.LOADRA : {
+          int n = next;
+          h = vm -> { vm.push(vm.ra); return n; };
+          break;
+        }
+        case SVMParser.STORETM : {
+          int n = next;
+          h = vm -> { vm.tm = vm.pop(); return n; };
+          break;
+        }
+        case SVMParser.LOADTM : {
+          int n = next;
+          h = vm -> { vm.push(vm.tm); return n; };
+          break;
+        }
+        case SVMParser.LOADFP : {
+          int n = next;
+          h = vm -> { vm.push(vm.fp); return n; };
+          break;
+        }
+        case SVMParser.STOREFP : {
+          int n = next;
+          h = vm -> { vm.fp = vm.pop(); return n; };
+          break;
+        }
+        case SVMParser.COPYFP : {
+          int n = next;
+          h = vm -> { vm.fp = vm.sp; return n; };
+          break;
+        }
+        case SVMParser.STOREHP : {
+          int n = next;
+          h = vm -> { vm.storeHp(vm.pop()); return n; };
+          break;
+        }
+        case SVMParser.LOADHP : {
+          int n = next;
+          h = vm -> { vm.push(vm.hp); return n; };
+          break;
+        }
+        case SVMParser.PRINT : {
+          int n = next;
+          h = vm -> { System.out.println((vm.sp<vm.memsize)?vm.load(vm.sp):"Empty stack!"); return n; };
+          break;
+        }
+        case SVMParser.HALT :
+          h = vm -> -1;
+          break;
+        case SVMParser.LOADLOCAL : {
+          int k = fetch(code, next++);
+          int n = next;
+          h = vm -> { vm.push(vm.load(vm.fp + k)); return n; };
+          break;
+        }
+        case SVMParser.LOADOUTER : {
+          int hops = fetch(code, next++);
+          int k = fetch(code, next++);
+          int n = next;
+          h = vm -> {
+            int f = vm.fp;
+            for (int j = 0; j < hops; j++) f = vm.load(f);
+            vm.push(vm.load(f + k));
+            return n;
+          };
+          break;
+        }
+        case SVMParser.DUP : {
+          int n = next;
+          h = vm -> { vm.push(vm.load(vm.sp)); return n; };
+          break;
+        }
+        case SVMParser.CALLFRAME : {
+          int hops = fetch(code, next++);
+          int k = fetch(code, next++);
+          int n = next;
+          h = vm -> {
+            int f = vm.fp;
+            for (int j = 0; j < hops; j++) f = vm.load(f);
+            vm.push(f);
+            vm.ra = n;
+            return vm.load(f + k);
+          };
+          break;
+        }
+        case SVMParser.CALL : {
+          int hops = fetch(code, next++);
+          int target = fetch(code, next++);
+          int n = next;
+          h = vm -> {
+            int f = vm.fp;
+            for (int j = 0; j < hops; j++) f = vm.load(f);
+            vm.push(f);
+            vm.ra = n;
+            return target;
+          };
+          break;
+        }
+        case SVMParser.JUMPANDLINK : {
+          int target = fetch(code, next++);
+          int n = next;
+          h = vm -> {
+            vm.ra = n;
+            return target;
+          };
+          break;
+        }
+        case SVMParser.CALLMETHOD : {
+          int k = fetch(code, next++);
+          int n = next;
+          int site = i;
+          h = vm -> { vm.ra = n; return vm.callMethod(site, k, vm.sp); };
+          break;
+        }
+        case SVMParser.NEW : {
+          int f = fetch(code, next++);
+          int m = fetch(code, next++);
+          int n = next;
+          h = vm -> { int obj = vm.allocate(f, m); vm.push(obj); return n; };
+          break;
+        }
+        case SVMParser.LOADGFP : {
+          int n = next;
+          h = vm -> { vm.push(vm.memsize); return n; };
+          break;
+        }
+        case SVMParser.ENTER : {
+          int level = fetch(code, next++);
+          int n = next;
+          h = vm -> { vm.enter(level, vm.fp); return n; };
+          break;
+        }
+        case SVMParser.LEAVE : {
+          int level = fetch(code, next++);
+          int n = next;
+          h = vm -> { vm.leave(level); return n; };
+          break;
+        }
+        case SVMParser.LOADDISPLAY : {
+          int level = fetch(code, next++);
+          int k = fetch(code, next++);
+          int n = next;
+          h = vm -> { vm.push(vm.load(vm.display[level] + k)); return n; };
+          break;
+        }
+        case SVMParser.PUSHDISPLAY : {
+          int level = fetch(code, next++);
+          int n = next;
+          h = vm -> { vm.push(vm.display[level]); return n; };
+          break;
+        }
+        case SVMParser.EQUAL : {
+          int n = next;
+          h = vm -> { int v1 = vm.pop(); vm.push(vm.pop() == v1 ? 1 : 0); return n; };
+          break;
+        }
+        case SVMParser.LESSEQUAL : {
+          int n = next;
+          h = vm -> { int v1 = vm.pop(); vm.push(vm.pop() <= v1 ? 1 : 0); return n; };
+          break;
+        }
+        case SVMParser.GREATEREQUAL : {
+          int n = next;
+          h = vm -> { int v1 = vm.pop(); vm.push(vm.pop() >= v1 ? 1 : 0); return n; };
+          break;
+        }
+        case SVMParser.LESS : {
+          int n = next;
+          h = vm -> { int v1 = vm.pop(); vm.push(vm.pop() < v1 ? 1 : 0); return n; };
+          break;
+        }
+        case SVMParser.NOT : {
+          int n = next;
+          h = vm -> { vm.push(vm.pop() == 0 ? 1 : 0); return n; };
+          break;
+        }
+        case SVMParser.BRANCHTRUE : {
+          int target = fetch(code, next++);
+          int n = next;
+          h = vm -> vm.pop() != 0 ? target : n;
+          break;
+        }
+        case SVMParser.BRANCHFALSE : {
+          int target = fetch(code, next++);
+          int n = next;
+          h = vm -> vm.pop() == 0 ? target : n;
+          break;
+        }
+        default : { // unknown words are skipped, as in ExecuteVM.cpu()
+          int n = next;
+          h = vm -> n;
+        }
+      }
+      handlers[i] = h;
+      return next;
+    }
+
+    static int operands(int op) {
+      switch ( op ) {
+        case SVMParser.PUSH : case SVMParser.BRANCH : case SVMParser.BRANCHEQ : case SVMParser.BRANCHLESSEQ :
+        case SVMParser.BRANCHTRUE : case SVMParser.BRANCHFALSE : case SVMParser.LOADLOCAL : case SVMParser.CALLMETHOD :
+        case SVMParser.JUMPANDLINK : case SVMParser.ENTER : case SVMParser.LEAVE : case SVMParser.PUSHDISPLAY :
+          return 1;
+        case SVMParser.LOADOUTER : case SVMParser.CALLFRAME : case SVMParser.NEW : case SVMParser.CALL :
+        case SVMParser.LOADDISPLAY :
+          return 2;
+        default :
+          return 0;
+      }
+    }
+
+    private static int next(int[] code, int i) {
+      return i + 1 + operands(code[i]);
+    }
+
+    private static int op(int[] code, int i) {
+      return i >= 0 && i < code.length ? code[i] : -1;
+    }
+
+    // matches the fixed sequences emitted by CodeGenerationASTVisitor (in their expanded
+    // form too, as found in older .asm files) and returns a single handler executing the
+    // whole sequence, or null if no sequence starts at address i
+    private static Handler fuse(int[] code, int i) {
+      int a = i;
+      switch ( code[i] ) {
+        case SVMParser.LOADFP : { // lfp, lw * d, then a variable load or a call through the frame
+          a++;
+          int d = 0;
+          while (op(code, a) == SVMParser.LOADW) { d++; a++; }
+          int hops = d;
+          if (op(code, a) == SVMParser.PUSH && op(code, a+2) == SVMParser.ADD && op(code, a+3) == SVMParser.LOADW) {
+            int k = op(code, a+1);
+            int n = a+4;
+            return vm -> {
+              int f = vm.fp;
+              for (int j = 0; j < hops; j++) f = vm.load(f);
+              vm.push(vm.load(f + k));
+              return n;
+            };
+          }
+          if (op(code, a) == SVMParser.STORETM && op(code, a+1) == SVMParser.LOADTM && op(code, a+2) == SVMParser.LOADTM
+              && op(code, a+3) == SVMParser.PUSH && op(code, a+5) == SVMParser.ADD && op(code, a+6) == SVMParser.LOADW
+              && op(code, a+7) == SVMParser.JS) {
+            int k = op(code, a+4);
+            int n = a+8;
+            return vm -> {
+              int f = vm.fp;
+              for (int j = 0; j < hops; j++) f = vm.load(f);
+              vm.push(vm.tm = f);
+              vm.ra = n;
+              return vm.load(f + k);
+            };
+          }
+          if (hops == 0) return null;
+          int n = a;
+          return vm -> {
+            int f = vm.fp;
+            for (int j = 0; j < hops; j++) f = vm.load(f);
+            vm.push(f);
+            return n;
+          };
+        }
+        case SVMParser.STORETM : {
+          if (op(code, a+1) == SVMParser.LOADTM && op(code, a+2) == SVMParser.LOADTM && op(code, a+3) == SVMParser.LOADW
+              && op(code, a+4) == SVMParser.PUSH && op(code, a+6) == SVMParser.ADD && op(code, a+7) == SVMParser.LOADW
+              && op(code, a+8) == SVMParser.JS) { // method call through the dispatch pointer of the object on top
+            int k = op(code, a+5);
+            int n = a+9;
+            return vm -> {
+              int obj = vm.tm = vm.load(vm.sp);
+              vm.ra = n;
+              return vm.load(vm.load(obj) + k);
+            };
+          }
+          // function epilogue: stm, pop * p, sra, pop * q, sfp, ltm, lra, js
+          a++;
+          int p = 0;
+          while (op(code, a) == SVMParser.POP) { p++; a++; }
+          if (op(code, a++) != SVMParser.STORERA) return null;
+          int q = 0;
+          while (op(code, a) == SVMParser.POP) { q++; a++; }
+          if (op(code, a) != SVMParser.STOREFP || op(code, a+1) != SVMParser.LOADTM
+              || op(code, a+2) != SVMParser.LOADRA || op(code, a+3) != SVMParser.JS) return null;
+          int locals = p, pars = q;
+          int n = a+4;
+          return vm -> {
+            int sp = vm.sp;
+            int result = vm.tm = vm.load(sp++);
+            sp += locals;
+            int ret = vm.load(sp++);
+            sp += pars;
+            vm.fp = vm.load(sp);
+            vm.store(sp, result);
+            vm.sp = sp;
+            vm.ra = n;
+            return ret;
+          };
+        }
+        case SVMParser.COPYFP : {
+          if (op(code, a+1) != SVMParser.LOADRA) return null;
+          int n = a+2;
+          return vm -> { vm.fp = vm.sp; vm.push(vm.ra); return n; };
+        }
+        case SVMParser.LOADHP : { // lhp, sw, lhp, push 1, add, shp: pops a word onto the heap
+          if (op(code, a+1) != SVMParser.STOREW || op(code, a+2) != SVMParser.LOADHP || op(code, a+3) != SVMParser.PUSH
+              || op(code, a+4) != 1 || op(code, a+5) != SVMParser.ADD || op(code, a+6) != SVMParser.STOREHP) return null;
+          int n = a+7;
+          return vm -> { vm.store(vm.hp, vm.pop()); vm.storeHp(vm.hp + 1); return n; };
+        }
+        case SVMParser.PUSH : {
+          int k = op(code, a+1);
+          if (k == 1 && op(code, a+2) == SVMParser.BRANCHEQ) { // push 1, beq l: branch if true
+            int target = op(code, a+3);
+            int n = a+4;
+            return vm -> vm.pop() == 1 ? target : n;
+          }
+          if (op(code, a+2) != SVMParser.ADD) return null;
+          int n = a+3;
+          return vm -> { vm.push(vm.pop() + k); return n; };
+        }
+        case SVMParser.BRANCHEQ :
+        case SVMParser.BRANCHLESSEQ : { // beq/bleq l1, push 0, b l2, l1: push 1, l2: comparison to 0/1
+          int t = op(code, a+1);
+          if (op(code, a+2) != SVMParser.PUSH || op(code, a+3) != 0 || op(code, a+4) != SVMParser.BRANCH
+              || op(code, t) != SVMParser.PUSH || op(code, t+1) != 1 || op(code, a+5) != t+2) return null;
+          int n = t+2;
+          if (code[i] == SVMParser.BRANCHEQ)
+            return vm -> { int v1 = vm.pop(); vm.push(vm.pop() == v1 ? 1 : 0); return n; };
+          return vm -> { int v1 = vm.pop(); vm.push(vm.pop() <= v1 ? 1 : 0); return n; };
+        }
+        case SVMParser.EQUAL : case SVMParser.LESSEQUAL :
+        case SVMParser.GREATEREQUAL : case SVMParser.LESS : { // comparison, bt/bf l: compare and branch
+          boolean onTrue = op(code, a+1) == SVMParser.BRANCHTRUE;
+          if (!onTrue && op(code, a+1) != SVMParser.BRANCHFALSE) return null;
+          int target = op(code, a+2);
+          int n = a+3;
+          switch ( code[i] ) {
+            case SVMParser.EQUAL : return vm -> { int v1 = vm.pop(); return (vm.pop() == v1) == onTrue ? target : n; };
+            case SVMParser.LESSEQUAL : return vm -> { int v1 = vm.pop(); return (vm.pop() <= v1) == onTrue ? target : n; };
+            case SVMParser.GREATEREQUAL : return vm -> { int v1 = vm.pop(); return (vm.pop() >= v1) == onTrue ? target : n; };
+            default : return vm -> { int v1 = vm.pop(); return (vm.pop() < v1) == onTrue ? target : n; };
+          }
+        }
+      }
+      return null;
+    }
+
+    // operand words past the end of code[] read as 0, as a truncated instruction cannot run anyway
+    static int fetch(int[] code, int i) {
+      return i < code.length ? code[i] : 0;
+    }
+
+    void run(ExecuteVM vm) {
+      Handler[] handlers = this.handlers;
+      int ip = vm.ip;
+      if (vm.timed()) {
+        while (ip >= 0) {
+          ip = handlers[ip].exec(vm);
+          vm.poll();
+        }
+        return;
+      }
+      while (ip >= 0) ip = handlers[ip].exec(vm);
+    }
+
+}
@@ -0,0 +1,84 @@
+package svm;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+// Tiered execution: the switch in ExecuteVM.cpu() interprets everything at first and
+// counts, per function, the calls to its entry point and the backward jumps inside it.
+// A function whose count reaches the threshold is decoded (see ThreadedCode) on its own,
+// from its "functionN" label to the next one, and from then on runs pre-decoded
+// whenever control is inside it; the interpreter takes over again when it leaves.
+class TieredCode {
+
+    private final int[] function;  // index of the function each code address belongs to, -1 outside functions
+    private final boolean[] entry; // function entry points
+    private final int[] from, to;  // code range of each function
+    private final String[] names;
+    private final int[] counts;
+    private final int threshold;
+
+    private final ThreadedCode optimized;
+    private final ThreadedCode.Handler[] handlers;
+
+    TieredCode(int[] code, Map<String,Integer> labels, int threshold) {
+      this.threshold = threshold;
+      TreeMap<Integer,String> entries = new TreeMap<>();
+      for (Map.Entry<String,Integer> l : labels.entrySet())
+        if (l.getKey().startsWith("function") && l.getValue() < code.length) entries.put(l.getValue(), l.getKey());
+      int n = entries.size();
+      from = new int[n];
+      to = new int[n];
+      names = new String[n];
+      counts = new int[n];
+      function = new int[code.length];
+      entry = new boolean[code.length];
+      java.util.Arrays.fill(function, -1);
+      int f = 0;
+      for (Map.Entry<Integer,String> e : entries.entrySet()) {
+        from[f] = e.getKey();
+        Integer next = entries.higherKey(e.getKey());
+        to[f] = next != null ? next : code.length;
+        names[f] = e.getValue();
+        java.util.Arrays.fill(function, from[f], to[f], f);
+        entry[from[f]] = true;
+        f++;
+      }
+      optimized = new ThreadedCode(code, 0, 0);
+      handlers = optimized.handlers;
+    }
+
+    boolean optimized(int ip) {
+      return ip >= 0 && ip < handlers.length && handlers[ip] != null;
+    }
+
+    // runs pre-decoded code from ip until control leaves the optimized functions;
+    // returns the address the interpreter goes on from, -1 on halt
+    int run(ExecuteVM vm, int ip) {
+      ThreadedCode.Handler[] handlers = this.handlers;
+      if (vm.timed()) {
+        do {
+          ip = handlers[ip].exec(vm);
+          vm.poll();
+        } while (ip >= 0 && ip < handlers.length && handlers[ip] != null);
+      } else do ip = handlers[ip].exec(vm); while (ip >= 0 && ip < handlers.length && handlers[ip] != null);
+      if (ip >= 0) called(ip); // a call from optimized code to an interpreted function
+      return ip;
+    }
+
+    // control reached ip through js, callf or callm
+    void called(int ip) {
+      if (ip >= 0 && ip < entry.length && entry[ip]) count(function[ip]);
+    }
+
+    // a branch taken from "at" back to "target"
+    void jumpedBack(int at, int target) {
+      if (target <= at && target >= 0 && target < function.length && function[target] >= 0) count(function[target]);
+    }
+
+    private void count(int f) {
+      if (++counts[f] != threshold) return;
+      optimized.decode(from[f], to[f]);
+      System.err.println("Tier-up: " + names[f] + " (" + (to[f] - from[f]) + " words) after " + threshold + " calls or backward jumps");
+    }
+
+}
@@ -0,0 +1,13 @@
+package svm;
+
+// raised by the virtual machine when the program is still running at the deadline given
+// to ExecuteVM.setDeadline
+public class TimeLimitException extends TrapException {
+
+    private static final long serialVersionUID = 1L;
+
+    public TimeLimitException(String message) {
+      super(message);
+    }
+
+}
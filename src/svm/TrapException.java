@@ -0,0 +1,12 @@
+package svm;
+
+// raised by the virtual machine when the program cannot go on (e.g. the heap is exhausted)
+public class TrapException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public TrapException(String message) {
+      super(message);
+    }
+
+}